@@ -8,6 +8,7 @@ plugins {
 
     id("com.github.hierynomus.license") version "0.16.1"
     id("org.owasp.dependencycheck") version "6.5.3"
+    id("me.champeau.jmh") version "0.6.6"
 }
 
 dependencyCheck {
@@ -46,6 +47,8 @@ dependencies {
     implementation("org.openrewrite:rewrite-yaml:latest.integration")
     implementation("org.openrewrite:rewrite-maven:latest.integration")
 
+    implementation("com.fasterxml.jackson.core:jackson-databind:latest.release")
+
     implementation("org.slf4j:slf4j-nop:latest.release")
 
     implementation("ch.qos.logback:logback-classic:1.2.10")
@@ -62,14 +65,32 @@ dependencies {
 }
 
 tasks.named<Test>("test") {
-    useJUnitPlatform()
+    useJUnitPlatform {
+        excludeTags("scale")
+    }
     jvmArgs = listOf("-XX:+UnlockDiagnosticVMOptions", "-XX:+ShowHiddenFrames")
 }
 
+tasks.register<Test>("scaleTest") {
+    description = "Runs the tests tagged scale, which hold stub generation for large jars to time and memory budgets."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags("scale")
+    }
+    shouldRunAfter(tasks.named("test"))
+}
+
 tasks.named<JavaCompile>("compileJava") {
     options.compilerArgs.addAll(listOf("-Aproject=${project.group}:${project.name}"))
 }
 
+jmh {
+    // report allocation rate alongside throughput
+    profilers.add("gc")
+}
+
 application {
     mainClass.set("org.openrewrite.cli.RewriteTemplateGenerator")
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.objectweb.asm.ClassReader;
+import org.openrewrite.java.JavaParser;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Jars that are already on the benchmark classpath, so that benchmarks run without network access.
+ * "asm" is small and flat, "picocli" is one large class with deeply nested classes and "rewrite-java" is large.
+ */
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    static Path jar(String fixture) {
+        Class<?> type;
+        switch (fixture) {
+            case "asm":
+                type = ClassReader.class;
+                break;
+            case "picocli":
+                type = CommandLine.class;
+                break;
+            case "rewrite-java":
+                type = JavaParser.class;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown fixture " + fixture);
+        }
+        try {
+            return Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return The bytes of every class in the jar, in name order.
+     */
+    static List<byte[]> classes(Path jar) throws IOException {
+        List<byte[]> classes = new ArrayList<>();
+        try (JarIndex jarIndex = JarIndex.open(jar)) {
+            for (String fqn : new TreeSet<>(jarIndex.getClassNames())) {
+                classes.add(jarIndex.read(fqn));
+            }
+        }
+        return classes;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class JarScanBenchmark {
+    @Param({"asm", "picocli", "rewrite-java"})
+    String fixture;
+
+    Path jar;
+    List<String> someTypes;
+
+    @Setup
+    public void setup() throws IOException {
+        jar = Fixtures.jar(fixture);
+        try (JarIndex jarIndex = JarIndex.open(jar)) {
+            someTypes = new ArrayList<>(new TreeSet<>(jarIndex.getClassNames())).subList(0, 3);
+        }
+    }
+
+    @Benchmark
+    public void readSomeTypes(Blackhole blackhole) throws IOException {
+        try (JarIndex jarIndex = JarIndex.open(jar)) {
+            for (String type : someTypes) {
+                blackhole.consume(jarIndex.read(type));
+            }
+        }
+    }
+
+    @Benchmark
+    public void readAllTypes(Blackhole blackhole) throws IOException {
+        try (JarIndex jarIndex = JarIndex.open(jar)) {
+            for (String type : jarIndex.getClassNames()) {
+                blackhole.consume(jarIndex.read(type));
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.objectweb.asm.ClassReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class PublicApiPrinterBenchmark {
+    @Param({"asm", "picocli", "rewrite-java"})
+    String fixture;
+
+    List<byte[]> classes;
+    byte[] largestClass;
+    PublicApiPrinter visitedArtifact;
+
+    @Setup
+    public void setup() throws IOException {
+        classes = Fixtures.classes(Fixtures.jar(fixture));
+        largestClass = classes.stream().max(Comparator.comparingInt(c -> c.length)).orElseThrow(IllegalStateException::new);
+        visitedArtifact = visitWholeArtifact();
+    }
+
+    @Benchmark
+    public PublicApiPrinter visitLargestClass() {
+        PublicApiPrinter publicApiPrinter = new PublicApiPrinter();
+        StubGenerator.accept(new ClassReader(largestClass), publicApiPrinter);
+        return publicApiPrinter;
+    }
+
+    @Benchmark
+    public PublicApiPrinter visitWholeArtifact() {
+        PublicApiPrinter publicApiPrinter = new PublicApiPrinter();
+        for (byte[] classBytes : classes) {
+            StubGenerator.accept(new ClassReader(classBytes), publicApiPrinter);
+        }
+        return publicApiPrinter;
+    }
+
+    @Benchmark
+    public void print() throws IOException {
+        visitedArtifact.print(Writer.nullWriter());
+    }
+}
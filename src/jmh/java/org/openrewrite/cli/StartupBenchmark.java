@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.objectweb.asm.ClassReader;
+import org.openjdk.jmh.annotations.*;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold-start cost of one depends-on run. Every measurement is the only invocation in a fresh JVM, so class
+ * loading and initialization are included. The --dependency variant resolves through Maven with an empty
+ * resolution cache, which is the only path that existed before --jar and --classes (it needs network access
+ * unless the artifact is in the local Maven repository). Both read the same version of asm.
+ */
+@Fork(10)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    Path jar;
+    String dependency;
+    Path cacheDir;
+    PrintStream stdout;
+
+    @Setup
+    public void setup() throws IOException {
+        jar = Fixtures.jar("asm");
+        dependency = "org.ow2.asm:asm:" + ClassReader.class.getPackage().getImplementationVersion();
+        cacheDir = Files.createTempDirectory("rewrite-template-generator");
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @SuppressWarnings("InstantiationOfUtilityClass")
+    @Benchmark
+    public int dependsOnJar() {
+        return new CommandLine(new RewriteTemplateGenerator()).execute("depends-on", "--jar=" + jar);
+    }
+
+    @SuppressWarnings("InstantiationOfUtilityClass")
+    @Benchmark
+    public int dependsOnDependency() {
+        return new CommandLine(new RewriteTemplateGenerator()).execute("depends-on",
+                "--dependency=" + dependency, "--cache-dir=" + cacheDir);
+    }
+}
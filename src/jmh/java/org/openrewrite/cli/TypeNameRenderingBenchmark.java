@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the method descriptors of every class in a fixture the way {@link PublicApiPrinter} does,
+ * with a fresh cache and with a cache that has already seen them. Neither uses the process-wide
+ * {@link SymbolTable}, so the cold case never finds names the warm case rendered.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class TypeNameRenderingBenchmark {
+    @Param({"asm", "picocli", "rewrite-java"})
+    String fixture;
+
+    final List<String[]> packageAndMethodDescriptors = new ArrayList<>();
+    TypeNameCache warmCache;
+
+    @Setup
+    public void setup() throws IOException {
+        for (byte[] classBytes : Fixtures.classes(Fixtures.jar(fixture))) {
+            ClassReader classReader = new ClassReader(classBytes);
+            String className = classReader.getClassName();
+            String packageName = Type.getObjectType(className.substring(0, className.lastIndexOf('/'))).getClassName();
+            classReader.accept(new ClassVisitor(Opcodes.ASM9) {
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                    packageAndMethodDescriptors.add(new String[]{packageName, descriptor});
+                    return null;
+                }
+            }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        }
+
+        warmCache = new TypeNameCache(symbolTable(), new Profile());
+        for (String[] packageAndMethodDescriptor : packageAndMethodDescriptors) {
+            warmCache.forPackage(packageAndMethodDescriptor[0]).methodDescriptor(packageAndMethodDescriptor[1]);
+        }
+    }
+
+    @Benchmark
+    public void coldCache(Blackhole blackhole) {
+        render(new TypeNameCache(symbolTable(), new Profile()), blackhole);
+    }
+
+    @Benchmark
+    public void warmCache(Blackhole blackhole) {
+        render(warmCache, blackhole);
+    }
+
+    private static SymbolTable symbolTable() {
+        return new SymbolTable(4_096, 2_048, 65_536, 20_000);
+    }
+
+    private void render(TypeNameCache typeNameCache, Blackhole blackhole) {
+        for (String[] packageAndMethodDescriptor : packageAndMethodDescriptors) {
+            blackhole.consume(typeNameCache.forPackage(packageAndMethodDescriptor[0])
+                    .methodDescriptor(packageAndMethodDescriptor[1]));
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.maven.MavenParser;
+import org.openrewrite.maven.cache.LocalMavenArtifactCache;
+import org.openrewrite.maven.cache.MavenArtifactCache;
+import org.openrewrite.maven.cache.ReadOnlyLocalMavenArtifactCache;
+import org.openrewrite.maven.tree.MavenResolutionResult;
+import org.openrewrite.maven.tree.ResolvedDependency;
+import org.openrewrite.maven.utilities.MavenArtifactDownloader;
+import org.openrewrite.xml.tree.Xml;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves and downloads dependencies from a Maven repository. One instance can be shared by
+ * many resolutions so that the parser, the downloaded POMs and the artifact cache are reused.
+ * The parser is only created once a dependency is missing from the resolution cache.
+ */
+class ArtifactResolver {
+    private final MavenArtifactCache mavenArtifactCache;
+
+    @Nullable
+    private final ResolutionCache resolutionCache;
+
+    private final Profile profile;
+
+    @Nullable
+    private volatile Maven maven;
+
+    ArtifactResolver(MavenArtifactCache mavenArtifactCache, @Nullable ResolutionCache resolutionCache, Profile profile) {
+        this.mavenArtifactCache = mavenArtifactCache;
+        this.resolutionCache = resolutionCache;
+        this.profile = profile;
+    }
+
+    static ArtifactResolver create(@Nullable String cacheDir) {
+        return create(cacheDir, new Profile());
+    }
+
+    static ArtifactResolver create(@Nullable String cacheDir, Profile profile) {
+        Path artifactCacheDir = cacheDir == null ?
+                Paths.get(System.getProperty("user.home"), ".rewrite-cache", "artifacts") :
+                Paths.get(cacheDir);
+        return new ArtifactResolver(
+                ReadOnlyLocalMavenArtifactCache.mavenLocal().orElse(new LocalMavenArtifactCache(artifactCacheDir)),
+                new ResolutionCache(artifactCacheDir.resolve(".resolutions")),
+                profile);
+    }
+
+    private Maven maven() {
+        Maven m = maven;
+        if (m == null) {
+            synchronized (this) {
+                m = maven;
+                if (m == null) {
+                    m = new Maven(mavenArtifactCache);
+                    maven = m;
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * @param dependency group:artifact:version coordinates.
+     * @return The downloaded jar of the dependency.
+     * @throws IllegalArgumentException if the dependency can't be resolved or downloaded.
+     */
+    Path resolveArtifact(String dependency) {
+        String[] gav = gav(dependency);
+        if (resolutionCache != null) {
+            Path cached = resolutionCache.getArtifact(gav[0], gav[1], gav[2]);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        List<ResolvedDependency> dependencies = resolve(gav[0], gav[1], gav[2]);
+        if (dependencies.isEmpty()) {
+            throw new IllegalArgumentException("Unable to resolve the dependency " + dependency);
+        }
+
+        Path artifact = download(dependencies.iterator().next());
+        if (artifact == null) {
+            throw new IllegalArgumentException("Unable to download artifact " + dependency);
+        }
+
+        if (resolutionCache != null) {
+            resolutionCache.putArtifact(gav[0], gav[1], gav[2], artifact);
+        }
+        return artifact;
+    }
+
+    /**
+     * @param dependency      group:artifact:version coordinates.
+     * @param downloadThreads The maximum number of artifacts to download concurrently.
+     * @return The downloaded jars of the dependency and its transitive dependencies, in resolution order, along
+     * with the transitive dependencies that couldn't be downloaded. A classpath with failures isn't cached.
+     * @throws IllegalArgumentException if the dependency itself can't be resolved or downloaded.
+     */
+    Classpath resolveClasspath(String dependency, int downloadThreads) {
+        String[] gav = gav(dependency);
+        if (resolutionCache != null) {
+            List<Path> cached = resolutionCache.getClasspath(gav[0], gav[1], gav[2]);
+            if (cached != null) {
+                return new Classpath(cached, Collections.emptyMap());
+            }
+        }
+
+        List<ResolvedDependency> dependencies = resolve(gav[0], gav[1], gav[2]);
+        if (dependencies.isEmpty()) {
+            throw new IllegalArgumentException("Unable to resolve the dependency " + dependency);
+        }
+
+        Map<String, Path> artifacts = new LinkedHashMap<>();
+        Map<String, String> failures = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(downloadThreads, dependencies.size())));
+        try {
+            List<Future<Path>> downloads = new ArrayList<>(dependencies.size());
+            for (ResolvedDependency resolvedDependency : dependencies) {
+                downloads.add(executor.submit(() -> download(resolvedDependency)));
+            }
+            for (int i = 0; i < dependencies.size(); i++) {
+                String coordinates = coordinates(dependencies.get(i));
+                Path artifact;
+                String failure = "Unable to download artifact " + coordinates;
+                try {
+                    artifact = downloads.get(i).get();
+                } catch (ExecutionException e) {
+                    artifact = null;
+                    Throwable cause = e.getCause();
+                    while (cause.getCause() != null) {
+                        cause = cause.getCause();
+                    }
+                    failure += ": " + cause;
+                }
+                if (artifact != null) {
+                    artifacts.put(coordinates, artifact);
+                } else if (i == 0) {
+                    throw new IllegalArgumentException(failure);
+                } else {
+                    failures.put(coordinates, failure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while downloading artifacts.", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (resolutionCache != null) {
+            resolutionCache.putClasspath(gav[0], gav[1], gav[2], dependencies.stream()
+                    .map(ArtifactResolver::coordinates)
+                    .collect(Collectors.toList()), artifacts);
+        }
+        return new Classpath(new ArrayList<>(artifacts.values()), failures);
+    }
+
+    private static String[] gav(String dependency) {
+        String[] gav = dependency.split(":");
+        if (gav.length != 3) {
+            throw new IllegalArgumentException("Dependency must be of the form group:artifact:version");
+        }
+        return gav;
+    }
+
+    private static String coordinates(ResolvedDependency dependency) {
+        return dependency.getGroupId() + ":" + dependency.getArtifactId() + ":" + dependency.getVersion();
+    }
+
+    /**
+     * @return The dependency itself followed by its transitive dependencies.
+     */
+    List<ResolvedDependency> resolve(String groupId, String artifactId, String version) {
+        try (Profile.Timer timer = profile.start(Profile.Phase.RESOLVE)) {
+            timer.subject(groupId + ":" + artifactId + ":" + version);
+            return resolvePom(groupId, artifactId, version);
+        }
+    }
+
+    private List<ResolvedDependency> resolvePom(String groupId, String artifactId, String version) {
+        Maven m = maven();
+        Xml.Document pom = m.parser
+                .parse(m.ctx, "<project>" +
+                        "<modelVersion>4.0.0</modelVersion>" +
+                        "<groupId>org.openrewrite</groupId>" +
+                        "<artifactId>rewrite-template-generator</artifactId>" +
+                        "<version>1</version>" +
+                        "<dependencies>" + "" +
+                        "  <dependency>" +
+                        "    <groupId>" + groupId + "</groupId>" +
+                        "    <artifactId>" + artifactId + "</artifactId>" +
+                        "    <version>" + version + "</version>" +
+                        "  </dependency>" +
+                        "</dependencies>" +
+                        "</project>")
+                .get(0);
+
+        //noinspection OptionalGetWithoutIsPresent
+        MavenResolutionResult maven = pom.getMarkers().findFirst(MavenResolutionResult.class).get();
+
+        return maven.getDependencies().values()
+                .stream()
+                .flatMap(Collection::stream)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    @Nullable
+    Path download(ResolvedDependency dependency) {
+        try (Profile.Timer timer = profile.start(Profile.Phase.DOWNLOAD)) {
+            timer.subject(coordinates(dependency));
+            return maven().downloader.downloadArtifact(dependency);
+        }
+    }
+
+    static class Classpath {
+        private final List<Path> jars;
+        private final Map<String, String> failures;
+
+        private Classpath(List<Path> jars, Map<String, String> failures) {
+            this.jars = jars;
+            this.failures = failures;
+        }
+
+        /**
+         * @return The downloaded jars, in resolution order.
+         */
+        List<Path> getJars() {
+            return jars;
+        }
+
+        /**
+         * @return Why each transitive dependency that is missing from {@link #getJars()} couldn't be downloaded,
+         * by group:artifact:version coordinates. Empty when the classpath is complete.
+         */
+        Map<String, String> getFailures() {
+            return failures;
+        }
+    }
+
+    private static class Maven {
+        private final MavenParser parser = MavenParser.builder().build();
+        private final ExecutionContext ctx = new InMemoryExecutionContext();
+        private final MavenArtifactDownloader downloader;
+
+        private Maven(MavenArtifactCache mavenArtifactCache) {
+            this.downloader = new MavenArtifactDownloader(mavenArtifactCache, null,
+                    t -> {
+                        throw new IllegalStateException("Unable to download artifact.", t);
+                    });
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class files in a directory tree laid out by package, like a compiler's output directory.
+ * Subdirectories are walked in parallel.
+ */
+public class ClassDirectory implements ClassSource {
+    private final Map<String, Path> classFilesByFqn;
+
+    private ClassDirectory(Map<String, Path> classFilesByFqn) {
+        this.classFilesByFqn = classFilesByFqn;
+    }
+
+    public static ClassDirectory open(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            throw new IOException(dir + " is not a directory");
+        }
+        Map<String, Path> classFilesByFqn = new ConcurrentHashMap<>();
+        try {
+            ForkJoinPool.commonPool().invoke(new Walk(dir, dir, classFilesByFqn));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return new ClassDirectory(classFilesByFqn);
+    }
+
+    @Override
+    public Set<String> getClassNames() {
+        return Collections.unmodifiableSet(classFilesByFqn.keySet());
+    }
+
+    @Override
+    public boolean contains(String fqn) {
+        return classFilesByFqn.containsKey(fqn);
+    }
+
+    @Override
+    @Nullable
+    public byte[] read(String fqn) throws IOException {
+        Path classFile = classFilesByFqn.get(fqn);
+        return classFile == null ? null : Files.readAllBytes(classFile);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static class Walk extends RecursiveAction {
+        private final Path root;
+        private final Path dir;
+        private final Map<String, Path> classFilesByFqn;
+
+        private Walk(Path root, Path dir, Map<String, Path> classFilesByFqn) {
+            this.root = root;
+            this.dir = dir;
+            this.classFilesByFqn = classFilesByFqn;
+        }
+
+        @Override
+        protected void compute() {
+            List<Walk> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+                for (Path child : children) {
+                    String name = child.getFileName().toString();
+                    if (Files.isDirectory(child)) {
+                        if (!"META-INF".equals(name)) {
+                            subdirectories.add(new Walk(root, child, classFilesByFqn));
+                        }
+                    } else if (name.endsWith(".class") && !"module-info.class".equals(name)) {
+                        StringBuilder fqn = new StringBuilder();
+                        for (Path segment : root.relativize(child)) {
+                            if (fqn.length() > 0) {
+                                fqn.append('.');
+                            }
+                            fqn.append(segment);
+                        }
+                        fqn.setLength(fqn.length() - ".class".length());
+                        classFilesByFqn.put(fqn.toString(), child);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            invokeAll(subdirectories);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Class files addressable by fully qualified name, where nested classes are separated by '$'.
+ */
+public interface ClassSource extends Closeable {
+    Set<String> getClassNames();
+
+    boolean contains(String fqn);
+
+    /**
+     * @return The class file bytes of the given type, or null if this source does not contain it.
+     */
+    @Nullable
+    byte[] read(String fqn) throws IOException;
+
+    /**
+     * @return A hash of the artifact that the given type is read from, which changes whenever any class in it does,
+     * or null if it can't be had without reading every class.
+     */
+    @Nullable
+    default String getArtifactHash(String fqn) {
+        return null;
+    }
+}
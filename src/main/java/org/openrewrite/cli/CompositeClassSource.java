@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One index over several class sources, like a classpath. When more than one source contains
+ * a class, the first one wins.
+ */
+public class CompositeClassSource implements ClassSource {
+    private final List<? extends ClassSource> classSources;
+    private final Map<String, ClassSource> classSourcesByFqn = new HashMap<>();
+
+    public CompositeClassSource(List<? extends ClassSource> classSources) {
+        this.classSources = classSources;
+        for (ClassSource classSource : classSources) {
+            for (String fqn : classSource.getClassNames()) {
+                classSourcesByFqn.putIfAbsent(fqn, classSource);
+            }
+        }
+    }
+
+    @Override
+    public Set<String> getClassNames() {
+        return Collections.unmodifiableSet(classSourcesByFqn.keySet());
+    }
+
+    @Override
+    public boolean contains(String fqn) {
+        return classSourcesByFqn.containsKey(fqn);
+    }
+
+    @Override
+    @Nullable
+    public byte[] read(String fqn) throws IOException {
+        ClassSource classSource = classSourcesByFqn.get(fqn);
+        return classSource == null ? null : classSource.read(fqn);
+    }
+
+    @Override
+    @Nullable
+    public String getArtifactHash(String fqn) {
+        ClassSource classSource = classSourcesByFqn.get(fqn);
+        return classSource == null ? null : classSource.getArtifactHash(fqn);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (ClassSource classSource : classSources) {
+            try {
+                classSource.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
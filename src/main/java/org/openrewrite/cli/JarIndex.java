@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Class entries of a jar, indexed by fully qualified name from the zip central directory.
+ * Only the entries that are actually read get inflated.
+ */
+public class JarIndex implements ClassSource {
+    private final ZipFile zipFile;
+    private final Map<String, ZipEntry> entriesByFqn;
+    private final String artifactHash;
+
+    private JarIndex(ZipFile zipFile, Map<String, ZipEntry> entriesByFqn, String artifactHash) {
+        this.zipFile = zipFile;
+        this.entriesByFqn = entriesByFqn;
+        this.artifactHash = artifactHash;
+    }
+
+    public static JarIndex open(Path jar) throws IOException {
+        ZipFile zipFile = new ZipFile(jar.toFile());
+        try {
+            Map<String, ZipEntry> entriesByFqn = new HashMap<>(zipFile.size() * 4 / 3 + 1);
+            // the central directory has the CRC of every entry's content, so it can be hashed without inflating
+            MessageDigest directoryDigest = StubCache.sha256();
+            long classBytes = 0;
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (!entry.isDirectory() && name.endsWith(".class") &&
+                        !name.startsWith("META-INF/") && !"module-info.class".equals(name)) {
+                    entriesByFqn.put(name.substring(0, name.length() - ".class".length()).replace('/', '.'), entry);
+                    directoryDigest.update(name.getBytes(StandardCharsets.UTF_8));
+                    long crc = entry.getCrc();
+                    for (int shift = 0; shift < 32; shift += 8) {
+                        directoryDigest.update((byte) (crc >>> shift));
+                    }
+                    classBytes += entry.getSize();
+                }
+            }
+            return new JarIndex(zipFile, entriesByFqn, StubCache.hex(directoryDigest.digest()) + '-' +
+                    Long.toHexString(classBytes) + '-' + Integer.toHexString(entriesByFqn.size()));
+        } catch (Throwable t) {
+            // e.g. a ZipError for a malformed central directory
+            try {
+                zipFile.close();
+            } catch (IOException suppressed) {
+                t.addSuppressed(suppressed);
+            }
+            throw t;
+        }
+    }
+
+    @Override
+    public Set<String> getClassNames() {
+        return Collections.unmodifiableSet(entriesByFqn.keySet());
+    }
+
+    @Override
+    public boolean contains(String fqn) {
+        return entriesByFqn.containsKey(fqn);
+    }
+
+    @Override
+    @Nullable
+    public byte[] read(String fqn) throws IOException {
+        ZipEntry entry = entriesByFqn.get(fqn);
+        if (entry == null) {
+            return null;
+        }
+        try (InputStream is = zipFile.getInputStream(entry)) {
+            return is.readAllBytes();
+        }
+    }
+
+    /**
+     * @return A SHA-256 hash of the names and content CRCs of every class in the jar, read from the central directory.
+     */
+    @Override
+    public String getArtifactHash(String fqn) {
+        return artifactHash;
+    }
+
+    @Override
+    public void close() throws IOException {
+        zipFile.close();
+    }
+}
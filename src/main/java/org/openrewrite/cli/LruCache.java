@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe, size-bounded cache that evicts the least recently used entry.
+ * Values are loaded outside of the lock, so two threads may load the same key concurrently.
+ */
+class LruCache<K, V> {
+    private final Map<K, V> entries;
+
+    private final Consumer<V> onEviction;
+
+    LruCache(int maximumSize) {
+        this(maximumSize, value -> {
+        });
+    }
+
+    /**
+     * @param onEviction Called with every value the cache stops holding, including one loaded by a thread that
+     *                   lost a race to load the same key. Evictions call it while holding the cache's lock.
+     */
+    LruCache(int maximumSize, Consumer<V> onEviction) {
+        this.onEviction = onEviction;
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > maximumSize) {
+                    onEviction.accept(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Nullable
+    synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(K key, V value) {
+        V replaced = entries.put(key, value);
+        if (replaced != null && replaced != value) {
+            onEviction.accept(replaced);
+        }
+    }
+
+    /**
+     * @return The value already held for the key, or null if the given value is now held.
+     */
+    @Nullable
+    synchronized V putIfAbsent(K key, V value) {
+        return entries.putIfAbsent(key, value);
+    }
+
+    V get(K key, Loader<K, V> loader) throws IOException {
+        V value = get(key);
+        if (value == null) {
+            V loaded = loader.load(key);
+            value = putIfAbsent(key, loaded);
+            if (value == null) {
+                value = loaded;
+            } else {
+                // another thread loaded the same key first
+                onEviction.accept(loaded);
+            }
+        }
+        return value;
+    }
+
+    @FunctionalInterface
+    interface Loader<K, V> {
+        V load(K key) throws IOException;
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import jdk.jfr.*;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time spent per phase of a run and counts of what was read and written, summarized by --profile. Every timed
+ * phase is also emitted as a JFR event, so that a production recording can correlate it with GC and allocation.
+ * Safe to share between threads.
+ */
+class Profile {
+    private static final int SLOWEST_CLASSES = 10;
+
+    /**
+     * Tells whether a recording has phase events enabled, without creating an event for every timed phase.
+     */
+    private static final PhaseEvent PHASE_EVENTS = new PhaseEvent();
+
+    enum Phase {
+        RESOLVE("resolve"),
+        DOWNLOAD("download"),
+        INDEX("index"),
+        INFLATE("inflate"),
+        VISIT("visit"),
+        RENDER_TYPES("render types"),
+        PRINT("print"),
+        COMPILE("compile");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    enum Counter {
+        CLASSES_SCANNED("classes scanned"),
+        CLASSES_VISITED("classes visited"),
+        CLASSES_EMITTED("classes emitted"),
+        BYTES_INFLATED("bytes inflated"),
+        BYTES_EMITTED("bytes emitted");
+
+        private final String label;
+
+        Counter(String label) {
+            this.label = label;
+        }
+    }
+
+    private final LongAdder[] phaseNanos = adders(Phase.values().length);
+    private final LongAdder[] phaseCalls = adders(Phase.values().length);
+    private final LongAdder[] counters = adders(Counter.values().length);
+
+    /**
+     * The slowest classes to visit, fastest first.
+     */
+    private final PriorityQueue<SlowClass> slowestClasses = new PriorityQueue<>(SLOWEST_CLASSES + 1);
+    private volatile long slowClassNanos;
+
+    Timer start(Phase phase) {
+        return new Timer(phase);
+    }
+
+    <T> T time(Phase phase, Timed<T> timed) throws IOException {
+        try (Timer ignored = start(phase)) {
+            return timed.call();
+        }
+    }
+
+    void count(Counter counter, long amount) {
+        counters[counter.ordinal()].add(amount);
+    }
+
+    /**
+     * Records one occurrence of a phase that is too frequent to emit as a JFR event, like rendering a type name.
+     */
+    void record(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+        phaseCalls[phase.ordinal()].increment();
+    }
+
+    long getNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    long getCalls(Phase phase) {
+        return phaseCalls[phase.ordinal()].sum();
+    }
+
+    long getCount(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * @return A class source whose reads are timed as {@link Phase#INFLATE} and counted as bytes inflated.
+     */
+    ClassSource inflating(ClassSource classSource) {
+        return new ClassSource() {
+            @Override
+            public Set<String> getClassNames() {
+                return classSource.getClassNames();
+            }
+
+            @Override
+            public boolean contains(String fqn) {
+                return classSource.contains(fqn);
+            }
+
+            @Override
+            @Nullable
+            public byte[] read(String fqn) throws IOException {
+                byte[] classBytes;
+                try (Timer timer = start(Phase.INFLATE)) {
+                    timer.subject(fqn);
+                    classBytes = classSource.read(fqn);
+                }
+                if (classBytes != null) {
+                    count(Counter.BYTES_INFLATED, classBytes.length);
+                }
+                return classBytes;
+            }
+
+            @Override
+            @Nullable
+            public String getArtifactHash(String fqn) {
+                return classSource.getArtifactHash(fqn);
+            }
+
+            @Override
+            public void close() throws IOException {
+                classSource.close();
+            }
+        };
+    }
+
+    /**
+     * @return A stream that counts the bytes written to it, once encoded, as bytes emitted.
+     */
+    OutputStream emitting(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                count(Counter.BYTES_EMITTED, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                count(Counter.BYTES_EMITTED, len);
+            }
+        };
+    }
+
+    /**
+     * Counts a source that is handed to the caller rather than written, as the bytes it takes in UTF-8.
+     */
+    void emitted(CharSequence source) {
+        long bytes = 0;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < source.length() &&
+                    Character.isLowSurrogate(source.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        count(Counter.BYTES_EMITTED, bytes);
+    }
+
+    /**
+     * Emits the counters as a JFR event, once a run is complete.
+     */
+    void commit() {
+        CountersEvent event = new CountersEvent();
+        if (event.shouldCommit()) {
+            event.classesScanned = getCount(Counter.CLASSES_SCANNED);
+            event.classesVisited = getCount(Counter.CLASSES_VISITED);
+            event.classesEmitted = getCount(Counter.CLASSES_EMITTED);
+            event.bytesInflated = getCount(Counter.BYTES_INFLATED);
+            event.bytesEmitted = getCount(Counter.BYTES_EMITTED);
+            event.commit();
+        }
+    }
+
+    private void visited(String className, long nanos) {
+        if (nanos <= slowClassNanos) {
+            return;
+        }
+        synchronized (slowestClasses) {
+            slowestClasses.add(new SlowClass(className, nanos));
+            if (slowestClasses.size() > SLOWEST_CLASSES) {
+                slowestClasses.poll();
+                //noinspection ConstantConditions
+                slowClassNanos = slowestClasses.peek().nanos;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder("profile:\n");
+        for (Phase phase : Phase.values()) {
+            summary.append(String.format(Locale.ROOT, "  %-14s %10d calls %12.1f ms\n", phase.label,
+                    getCalls(phase), getNanos(phase) / 1e6));
+        }
+        for (Counter counter : Counter.values()) {
+            summary.append(String.format(Locale.ROOT, "  %-16s %14d\n", counter.label, getCount(counter)));
+        }
+
+        List<SlowClass> slowest;
+        synchronized (slowestClasses) {
+            slowest = new ArrayList<>(slowestClasses);
+        }
+        slowest.sort(Comparator.reverseOrder());
+        summary.append("  slowest classes to visit:\n");
+        for (SlowClass slowClass : slowest) {
+            summary.append(String.format(Locale.ROOT, "  %12.3f ms  %s\n", slowClass.nanos / 1e6, slowClass.className));
+        }
+        return summary.toString();
+    }
+
+    private static LongAdder[] adders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    @FunctionalInterface
+    interface Timed<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Times one occurrence of a phase, until it is closed.
+     */
+    class Timer implements AutoCloseable {
+        private final Phase phase;
+        private final long start;
+
+        @Nullable
+        private final PhaseEvent event;
+
+        @Nullable
+        private String subject;
+
+        private Timer(Phase phase) {
+            this.phase = phase;
+            this.event = PHASE_EVENTS.isEnabled() ? new PhaseEvent() : null;
+            if (event != null) {
+                event.begin();
+            }
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * @param subject The class or dependency that the phase is working on.
+         */
+        void subject(String subject) {
+            this.subject = subject;
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - start;
+            record(phase, nanos);
+            if (phase == Phase.VISIT && subject != null) {
+                visited(subject, nanos);
+            }
+
+            if (event == null) {
+                return;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase.label;
+                event.subject = subject;
+                event.commit();
+            }
+        }
+    }
+
+    private static class SlowClass implements Comparable<SlowClass> {
+        private final String className;
+        private final long nanos;
+
+        private SlowClass(String className, long nanos) {
+            this.className = className;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public int compareTo(SlowClass o) {
+            return Long.compare(nanos, o.nanos);
+        }
+    }
+
+    @Name("org.openrewrite.cli.Phase")
+    @Label("Stub Generation Phase")
+    @Category("OpenRewrite")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Subject")
+        @Nullable
+        String subject;
+    }
+
+    @Name("org.openrewrite.cli.Counters")
+    @Label("Stub Generation Counters")
+    @Category("OpenRewrite")
+    @StackTrace(false)
+    static class CountersEvent extends Event {
+        @Label("Classes Scanned")
+        long classesScanned;
+
+        @Label("Classes Visited")
+        long classesVisited;
+
+        @Label("Classes Emitted")
+        long classesEmitted;
+
+        @Label("Bytes Inflated")
+        @DataAmount
+        long bytesInflated;
+
+        @Label("Bytes Emitted")
+        @DataAmount
+        long bytesEmitted;
+    }
+}
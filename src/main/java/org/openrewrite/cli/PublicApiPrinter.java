@@ -16,15 +16,14 @@
 package org.openrewrite.cli;
 
 import org.objectweb.asm.*;
-import org.objectweb.asm.signature.SignatureReader;
-import org.objectweb.asm.util.TraceSignatureVisitor;
 import org.openrewrite.internal.lang.Nullable;
 
+import java.io.*;
 import java.util.*;
 
 import static java.util.stream.Collectors.toList;
 
-@SuppressWarnings({"DynamicRegexReplaceableByCompiledPattern", "UseOfSystemOutOrSystemErr", "StringRepeatCanBeUsed", "StringBufferField"})
+@SuppressWarnings({"UseOfSystemOutOrSystemErr", "StringRepeatCanBeUsed", "StringBufferField"})
 public class PublicApiPrinter extends ClassVisitor {
     private static final String tab = "  ";
 
@@ -34,6 +33,12 @@ public class PublicApiPrinter extends ClassVisitor {
     private String className;
     private String packageName;
 
+    private final TypeNameCache typeNameCache;
+    private TypeNameCache.PackageTypeNames typeNames;
+
+    @Nullable
+    private final Usages usages;
+
     private int access;
     private boolean lastVisitedWasEnum;
 
@@ -41,51 +46,49 @@ public class PublicApiPrinter extends ClassVisitor {
 
     private final Map<String, PublicApi> publicApisByName = new TreeMap<>();
 
-     @SuppressWarnings("UseOfSystemOutOrSystemErr")
-     private final class PublicApi {
+    private static final class PublicApi {
         private final String name;
-        private final StringBuilder contents;
+        private final CharSequence contents;
 
-        private PublicApi(String name, StringBuilder contents) {
-            this.name = name;
-            this.contents = contents;
-        }
+        @Nullable
+        private final String parent;
 
-        void print() {
-            System.out.print(contents.toString());
-            publicApisByName.values().stream()
-                    .filter(pa -> name.equals(pa.getParent()))
-                    .forEach(PublicApi::print);
-            for (int i = 0; i < getDepth(); i++) {
-                System.out.print(tab);
-            }
-            System.out.print("}\n");
-        }
+        private final int depth;
 
-        @Nullable
-        public String getParent() {
-            return getParent(name);
-        }
+        private PublicApi(String name, CharSequence contents) {
+            this.name = name;
+            this.contents = contents;
 
-        private String getParent(String name) {
-            if (!name.contains("$")) {
-                return null;
-            }
-            return name.substring(0, name.lastIndexOf('$'));
-        }
+            int lastNested = name.lastIndexOf('$');
+            this.parent = lastNested == -1 ? null : name.substring(0, lastNested);
 
-        public int getDepth() {
             int depth = 0;
-            String parent = name;
-            while ((parent = getParent(parent)) != null) {
+            for (int i = lastNested; i != -1; i = name.lastIndexOf('$', i - 1)) {
                 depth++;
             }
-            return depth;
+            this.depth = depth;
         }
     }
 
     public PublicApiPrinter() {
+        this(new TypeNameCache());
+    }
+
+    /**
+     * @param typeNameCache Rendered type names, which can be shared by printers that visit classes of the same artifact.
+     */
+    public PublicApiPrinter(TypeNameCache typeNameCache) {
+        this(typeNameCache, null);
+    }
+
+    /**
+     * @param usages The names used by templates, to print only the members they use, or null to print every
+     *               public member.
+     */
+    public PublicApiPrinter(TypeNameCache typeNameCache, @Nullable Usages usages) {
         super(Opcodes.ASM9);
+        this.typeNameCache = typeNameCache;
+        this.usages = usages;
     }
 
     @Override
@@ -99,11 +102,12 @@ public class PublicApiPrinter extends ClassVisitor {
         this.stringBuilder = new StringBuilder();
 
         PublicApi api = new PublicApi(name, stringBuilder);
-        this.depth = api.getDepth();
+        this.depth = api.depth;
         publicApisByName.put(name, api);
 
         this.access = access;
         this.packageName = Type.getObjectType(name.substring(0, name.lastIndexOf('/'))).getClassName();
+        this.typeNames = typeNameCache.forPackage(packageName);
 
         if (depth == 0) {
             stringBuilder.append("package ").append(packageName).append(";\n");
@@ -119,12 +123,12 @@ public class PublicApiPrinter extends ClassVisitor {
             stringBuilder.append("class ");
         }
 
-        this.className = name.substring(name.lastIndexOf('/') + 1).replaceFirst("^.*\\$", "");
+        this.className = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('$')) + 1);
         stringBuilder.append(this.className);
 
         if (superName != null && !"java/lang/Object".equals(superName) && !"java/lang/Enum".equals(superName)) {
             stringBuilder.append(" extends ");
-            appendType(Type.getObjectType(superName).getDescriptor());
+            stringBuilder.append(typeNames.internalName(superName));
         }
         if (interfaces != null && interfaces.length > 0) {
             List<String> printableInterfaces = Arrays.stream(interfaces)
@@ -133,7 +137,7 @@ public class PublicApiPrinter extends ClassVisitor {
             if(!printableInterfaces.isEmpty()) {
                 stringBuilder.append(((access & Opcodes.ACC_INTERFACE) != 0) ? " extends " : " implements ");
                 for (int i = 0; i < printableInterfaces.size(); ++i) {
-                    appendType(Type.getObjectType(printableInterfaces.get(i)).getDescriptor());
+                    stringBuilder.append(typeNames.internalName(printableInterfaces.get(i)));
                     if (i != printableInterfaces.size() - 1) {
                         stringBuilder.append(", ");
                     }
@@ -172,7 +176,7 @@ public class PublicApiPrinter extends ClassVisitor {
 
     @Override
     public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
-        if (isNotPublicOuterClass() || (access & Opcodes.ACC_PUBLIC) == 0) {
+        if (isNotPublicOuterClass() || (access & Opcodes.ACC_PUBLIC) == 0 || isUnused(access, name)) {
             return null;
         }
 
@@ -203,28 +207,12 @@ public class PublicApiPrinter extends ClassVisitor {
         return null;
     }
 
-    private void appendType(String descriptor) {
-        appendType(descriptor, null);
+    private void appendType(String descriptor, @Nullable String signature) {
+        stringBuilder.append(signature == null ?
+                typeNames.descriptor(descriptor) :
+                typeNames.signature(signature));
     }
 
-    private void appendType(String descriptor, String signature) {
-        String type;
-        if (signature != null) {
-            TraceSignatureVisitor traceSignatureVisitor = new TraceSignatureVisitor(access);
-            new SignatureReader(signature).accept(traceSignatureVisitor);
-            type = traceSignatureVisitor.getDeclaration().replaceFirst("^\\sextends\\s", "");
-        } else {
-            type = Type.getType(descriptor).getClassName();
-        }
-
-        type = type.replaceAll("java\\.(io)\\.", "");
-        if (type.contains(".") && type.substring(0, type.lastIndexOf('.')).equals(packageName)) {
-            type = type.substring(type.lastIndexOf('.') + 1);
-        }
-        type = type.replace('$', '.');
-
-        stringBuilder.append(type);
-    }
     private String extractNameAndArguments(String methodName, String descriptor) {
         return methodName + descriptor.substring(0, descriptor.indexOf(")")+ 1) ;
     }
@@ -235,7 +223,7 @@ public class PublicApiPrinter extends ClassVisitor {
             return null;
         }
         printedMethodDescriptors.add(nameArgs);
-        if (isNotPublicOuterClass() || (access & Opcodes.ACC_PUBLIC) == 0) {
+        if (isNotPublicOuterClass() || (access & Opcodes.ACC_PUBLIC) == 0 || isUnused(access, name)) {
             return null;
         }
 
@@ -263,9 +251,10 @@ public class PublicApiPrinter extends ClassVisitor {
 
         appendAccess(access & ~(Opcodes.ACC_VOLATILE | Opcodes.ACC_TRANSIENT));
 
-        Type methodType = Type.getMethodType(descriptor);
+        String[] types = typeNames.methodDescriptor(descriptor);
+        String returnType = types[0];
 
-        appendType(methodType.getReturnType().getDescriptor());
+        stringBuilder.append(returnType);
 
         stringBuilder.append(' ');
         if ("<init>".equals(name)) {
@@ -275,12 +264,10 @@ public class PublicApiPrinter extends ClassVisitor {
         }
 
         stringBuilder.append('(');
-        Type[] argumentTypes = methodType.getArgumentTypes();
-        for (int i = 0; i < argumentTypes.length; i++) {
-            Type argumentType = argumentTypes[i];
-            appendType(argumentType.getDescriptor());
-            stringBuilder.append(" p").append(i);
-            if (i < argumentTypes.length - 1) {
+        for (int i = 1; i < types.length; i++) {
+            stringBuilder.append(types[i]);
+            stringBuilder.append(" p").append(i - 1);
+            if (i < types.length - 1) {
                 stringBuilder.append(", ");
             }
         }
@@ -290,7 +277,7 @@ public class PublicApiPrinter extends ClassVisitor {
             stringBuilder.append(" throws ");
             for (int i = 0; i < exceptions.length; i++) {
                 String exception = exceptions[i];
-                appendType(Type.getObjectType(exception).getDescriptor());
+                stringBuilder.append(typeNames.internalName(exception));
                 if (i > exceptions.length - 1) {
                     stringBuilder.append(' ');
                 }
@@ -299,9 +286,9 @@ public class PublicApiPrinter extends ClassVisitor {
 
         if (((access & Opcodes.ACC_ABSTRACT) == 0) && ((this.access & Opcodes.ACC_INTERFACE) == 0)) {
             stringBuilder.append(" {");
-            if (methodType.getReturnType().getSort() != Type.VOID) {
+            if (!descriptor.endsWith(")V")) {
                 stringBuilder.append(" return (");
-                appendType(methodType.getReturnType().getDescriptor());
+                stringBuilder.append(returnType);
                 stringBuilder.append(") (Object) null; ");
             }
             stringBuilder.append('}');
@@ -324,12 +311,105 @@ public class PublicApiPrinter extends ClassVisitor {
         return (access & Opcodes.ACC_PUBLIC) == 0;
     }
 
+    private boolean isUnused(int memberAccess, String name) {
+        return usages != null && !usages.isMemberUsed(className, memberAccess, name);
+    }
+
+    /**
+     * Adds a class that was rendered before, e.g. by a printer in another process.
+     *
+     * @param name     Internal name of the class.
+     * @param contents The class as returned by {@link #getContents(String)}.
+     */
+    public void add(String name, CharSequence contents) {
+        publicApisByName.put(name, new PublicApi(name, contents));
+    }
+
+    /**
+     * @param name Internal name of a visited class.
+     * @return The class as rendered, without the classes nested in it and without its closing brace.
+     */
+    @Nullable
+    public CharSequence getContents(String name) {
+        PublicApi api = publicApisByName.get(name);
+        return api == null ? null : api.contents;
+    }
+
+    /**
+     * Adds the classes visited by another printer, e.g. one that visited classes on another thread.
+     * Output is ordered by class name, so it doesn't depend on the order in which printers are merged.
+     */
+    public void merge(PublicApiPrinter other) {
+        publicApisByName.putAll(other.publicApisByName);
+    }
+
     public void print() {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+        try {
+            print(out);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Prints each visited top-level class along with its visited nested classes, separated by "---".
+     */
+    public void print(Writer out) throws IOException {
+        Map<String, List<PublicApi>> nestedByParent = nestedByParent();
+
+        for (PublicApi api : publicApisByName.values()) {
+            if (api.depth == 0) {
+                print(api, nestedByParent, out);
+                out.write("---");
+                out.write(System.lineSeparator());
+            }
+        }
+    }
+
+    /**
+     * @return The source of each visited top-level class along with its visited nested classes, by fully
+     * qualified name, in name order.
+     */
+    public Map<String, String> toSources() {
+        Map<String, List<PublicApi>> nestedByParent = nestedByParent();
+        Map<String, String> sources = new LinkedHashMap<>();
         for (PublicApi api : publicApisByName.values()) {
-            if (api.getDepth() == 0) {
-                api.print();
-                System.out.println("---");
+            if (api.depth == 0) {
+                StringWriter source = new StringWriter();
+                try {
+                    print(api, nestedByParent, source);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                sources.put(api.name.replace('/', '.'), source.toString());
             }
         }
+        return sources;
+    }
+
+    private Map<String, List<PublicApi>> nestedByParent() {
+        Map<String, List<PublicApi>> nestedByParent = new HashMap<>();
+        for (PublicApi api : publicApisByName.values()) {
+            if (api.parent != null) {
+                nestedByParent.computeIfAbsent(api.parent, p -> new ArrayList<>(2)).add(api);
+            }
+        }
+        return nestedByParent;
+    }
+
+    private void print(PublicApi api, Map<String, List<PublicApi>> nestedByParent, Writer out) throws IOException {
+        out.append(api.contents);
+        List<PublicApi> nested = nestedByParent.get(api.name);
+        if (nested != null) {
+            for (PublicApi nestedApi : nested) {
+                print(nestedApi, nestedByParent, out);
+            }
+        }
+        for (int i = 0; i < api.depth; i++) {
+            out.write(tab);
+        }
+        out.write("}\n");
     }
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Remembers which dependencies a group:artifact:version resolved to and where its jar was downloaded, so that
+ * later runs can skip Maven resolution entirely. Only release versions are cached, since they are immutable.
+ * The jar of a dependency and its whole classpath are kept apart, so that resolving one never replaces the other.
+ */
+class ResolutionCache {
+    private static final String DEPENDENCIES = "dependencies";
+    private static final String ARTIFACT_PREFIX = "artifact.";
+    private static final String CLASSPATH_SUFFIX = ".classpath";
+
+    private final Path root;
+
+    ResolutionCache(Path root) {
+        this.root = root;
+    }
+
+    static boolean isCacheable(String version) {
+        return !version.endsWith("-SNAPSHOT") &&
+               !version.startsWith("latest.") &&
+               !version.startsWith("[") &&
+               !version.startsWith("(");
+    }
+
+    /**
+     * @return The jar of the dependency, or null if it hasn't been resolved before or the jar no longer exists.
+     */
+    @Nullable
+    Path getArtifact(String groupId, String artifactId, String version) {
+        Properties resolution = load(entry(groupId, artifactId, version, ""));
+        return resolution == null ? null : artifact(resolution, groupId + ":" + artifactId + ":" + version);
+    }
+
+    /**
+     * @return The jars of the dependency and all of its transitive dependencies, or null if any of them
+     * hasn't been downloaded before or no longer exists.
+     */
+    @Nullable
+    List<Path> getClasspath(String groupId, String artifactId, String version) {
+        Properties resolution = load(entry(groupId, artifactId, version, CLASSPATH_SUFFIX));
+        if (resolution == null) {
+            return null;
+        }
+
+        List<Path> classpath = new ArrayList<>();
+        for (String dependency : resolution.getProperty(DEPENDENCIES, "").split(",")) {
+            Path artifact = artifact(resolution, dependency);
+            if (artifact == null) {
+                return null;
+            }
+            classpath.add(artifact);
+        }
+        return classpath;
+    }
+
+    void putArtifact(String groupId, String artifactId, String version, Path artifact) {
+        String dependency = groupId + ":" + artifactId + ":" + version;
+        put(entry(groupId, artifactId, version, ""), version, Collections.singletonList(dependency),
+                Collections.singletonMap(dependency, artifact));
+    }
+
+    /**
+     * Keeps nothing unless every dependency was downloaded, so that a later run tries the missing ones again
+     * rather than getting a classpath without them.
+     *
+     * @param dependencies The dependency itself followed by its transitive dependencies, as group:artifact:version.
+     * @param artifacts    The jars of those dependencies that were downloaded, by group:artifact:version.
+     */
+    void putClasspath(String groupId, String artifactId, String version, List<String> dependencies,
+                      Map<String, Path> artifacts) {
+        if (artifacts.keySet().containsAll(dependencies)) {
+            put(entry(groupId, artifactId, version, CLASSPATH_SUFFIX), version, dependencies, artifacts);
+        }
+    }
+
+    private static void put(Path entry, String version, List<String> dependencies, Map<String, Path> artifacts) {
+        if (!isCacheable(version)) {
+            return;
+        }
+
+        Properties resolution = new Properties();
+        resolution.setProperty(DEPENDENCIES, String.join(",", dependencies));
+        for (Map.Entry<String, Path> artifact : artifacts.entrySet()) {
+            resolution.setProperty(ARTIFACT_PREFIX + artifact.getKey(), artifact.getValue().toAbsolutePath().toString());
+        }
+
+        Path tmp = null;
+        try {
+            Files.createDirectories(entry.getParent());
+            // write to a temporary file first so that concurrent readers never see a partial entry
+            tmp = Files.createTempFile(entry.getParent(), version, ".tmp");
+            try (OutputStream os = Files.newOutputStream(tmp)) {
+                resolution.store(os, null);
+            }
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException ignored) {
+            // the cache is an optimization, so a failure to write it is not an error
+        } finally {
+            deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @param tmp A temporary file that wasn't moved into place, or null.
+     */
+    private static void deleteIfExists(@Nullable Path tmp) {
+        if (tmp != null) {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // as with the write itself, nothing depends on this succeeding
+            }
+        }
+    }
+
+    @Nullable
+    private static Properties load(Path entry) {
+        if (!Files.exists(entry)) {
+            return null;
+        }
+
+        Properties resolution = new Properties();
+        try (InputStream is = Files.newInputStream(entry)) {
+            resolution.load(is);
+        } catch (IOException e) {
+            return null;
+        }
+        return resolution;
+    }
+
+    @Nullable
+    private static Path artifact(Properties resolution, String dependency) {
+        String artifact = resolution.getProperty(ARTIFACT_PREFIX + dependency);
+        if (artifact == null || !Files.exists(Paths.get(artifact))) {
+            return null;
+        }
+        return Paths.get(artifact);
+    }
+
+    /**
+     * @param suffix Distinguishes kinds of resolutions of the same dependency.
+     */
+    private Path entry(String groupId, String artifactId, String version, String suffix) {
+        return root.resolve(groupId).resolve(artifactId).resolve(version + suffix + ".properties");
+    }
+}
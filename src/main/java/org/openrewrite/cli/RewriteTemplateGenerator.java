@@ -15,58 +15,85 @@
  */
 package org.openrewrite.cli;
 
-import org.objectweb.asm.ClassReader;
 import org.openrewrite.internal.lang.Nullable;
-import org.openrewrite.maven.MavenParser;
-import org.openrewrite.maven.cache.LocalMavenArtifactCache;
-import org.openrewrite.maven.cache.MavenArtifactCache;
-import org.openrewrite.maven.cache.ReadOnlyLocalMavenArtifactCache;
-import org.openrewrite.maven.tree.MavenResolutionResult;
-import org.openrewrite.maven.tree.ResolvedDependency;
-import org.openrewrite.maven.utilities.MavenArtifactDownloader;
-import org.openrewrite.xml.tree.Xml;
 import picocli.CommandLine;
+import picocli.CommandLine.ArgGroup;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
-import java.io.FileInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 @Command(
         name = "rewrite-template-generator",
-        version = "0.1.0",
+        version = RewriteTemplateGenerator.VERSION,
         description = "OpenRewrite: structured code search and transformation.",
         mixinStandardHelpOptions = true,
         subcommands = {
-                RewriteTemplateGenerator.DependsOn.class
+                RewriteTemplateGenerator.DependsOn.class,
+                RewriteTemplateGenerator.Batch.class,
+                RewriteTemplateGenerator.Serve.class,
+                RewriteTemplateGenerator.Verify.class
         }
 )
 public class RewriteTemplateGenerator {
+    static final String VERSION = "0.1.0";
+
     @SuppressWarnings("InstantiationOfUtilityClass")
     public static void main(String... args) {
         int exitCode = new CommandLine(new RewriteTemplateGenerator()).execute(args);
         System.exit(exitCode);
     }
 
+    @Nullable
+    private static StubCache stubCache(@Nullable Path stubCacheDir) {
+        return stubCacheDir == null ? null : new StubCache(stubCacheDir);
+    }
+
     @Command(name = "depends-on", description = "Builds type information into a template.")
     static class DependsOn implements Callable<Integer>, CommandLine.IExitCodeGenerator {
-        @Option(names = "--dependency",
-                description = "group:artifact:version coordinates of a dependency in a Maven repository.",
-                required = true)
-        private String dependency;
+        @ArgGroup(multiplicity = "1")
+        private Input input;
+
+        static class Input {
+            @Option(names = "--dependency",
+                    description = "group:artifact:version coordinates of a dependency in a Maven repository.",
+                    required = true)
+            @Nullable
+            private String dependency;
+
+            @Option(names = "--jar",
+                    description = "A jar on disk to generate stubs from, without going through Maven.",
+                    required = true)
+            @Nullable
+            private Path jar;
+
+            @Option(names = "--classes",
+                    description = "A directory of class files laid out by package to generate stubs from, " +
+                            "without going through Maven.",
+                    required = true)
+            @Nullable
+            private Path classes;
+        }
 
         @Option(names = "--types",
-                description = "The types to generate stubs for",
+                description = "The types to generate stubs for, as fully qualified names or patterns like " +
+                        "org.assertj.core.api.* (one package), org.assertj..*Assert (any subpackage) " +
+                        "and !org.assertj..internal.* (exclusion).",
                 split = ",")
         @Nullable
         private String[] types;
@@ -95,6 +122,93 @@ public class RewriteTemplateGenerator {
         @Nullable
         private String cacheDir;
 
+        @Option(names = "--stub-cache-dir",
+                description = "A directory to keep the stub of every visited class in, keyed by the class file's " +
+                        "content, so that classes that didn't change between artifact versions aren't visited again.")
+        @Nullable
+        private Path stubCacheDir;
+
+        @Option(names = "--classpath",
+                description = "With --dependency, download all of its transitive dependencies too, so that types " +
+                        "can be selected from anywhere in the dependency graph. Dependencies that can't be " +
+                        "downloaded are reported on stderr, and the exit code is non-zero even though the stubs " +
+                        "of the rest are written.",
+                defaultValue = "false")
+        private boolean classpath;
+
+        @Option(names = "--download-threads",
+                description = "Number of artifacts to download concurrently with --classpath.",
+                defaultValue = "4")
+        private int downloadThreads;
+
+        @Option(names = "--threads",
+                description = "Number of threads to visit classes and write --output-dir files on. Output is the same " +
+                        "regardless of thread count.",
+                defaultValue = "1")
+        private int threads;
+
+        @Option(names = "--closure",
+                description = "Also generate stubs for the types in the same artifact that the selected types extend, " +
+                        "implement or reference in their public signatures.",
+                defaultValue = "false")
+        private boolean closure;
+
+        @Option(names = "--usages",
+                description = "Template or recipe source files, or directories of them. Only the types and members " +
+                        "whose names appear in them are generated, along with the types those members need, " +
+                        "as with --closure.",
+                split = ",")
+        @Nullable
+        private List<Path> usages;
+
+        @ArgGroup
+        @Nullable
+        private Output output;
+
+        /**
+         * Where stubs go instead of being printed on stdout once every one is generated. Only one can be given.
+         */
+        static class Output {
+            @Option(names = "--stream",
+                    description = "Write each top-level type as soon as it is generated instead of holding every stub " +
+                            "in memory until the end.",
+                    required = true)
+            private boolean stream;
+
+            @Option(names = "--type-table",
+                    description = "Write a binary type table of the selected types to this file instead of printing " +
+                            "stubs. TypeTableReader turns it into class files that a parser can attribute types from.",
+                    required = true)
+            @Nullable
+            private Path typeTable;
+
+            @Option(names = "--output-jar",
+                    description = "Compile the stubs in-process and write the class files to this jar instead of " +
+                            "printing stubs. Stubs that don't compile are left out and reported on stderr.",
+                    required = true)
+            @Nullable
+            private Path outputJar;
+
+            @Option(names = "--output-dir",
+                    description = "Write each top-level type to its own source file in its package's directory " +
+                            "instead of printing stubs, along with a " + StubDirectory.INDEX + " file listing the " +
+                            "name, path and size of every stub.",
+                    required = true)
+            @Nullable
+            private Path outputDir;
+        }
+
+        @Option(names = "--cache-stats",
+                description = "Print type name cache statistics to stderr.",
+                defaultValue = "false")
+        private boolean cacheStats;
+
+        @Option(names = "--profile",
+                description = "Print the time spent in each phase, counts of classes and bytes read and written, " +
+                        "and the slowest classes to visit to stderr.",
+                defaultValue = "false")
+        private boolean printProfile;
+
         private int exitCode;
 
         @Option(names = {"-s", "--stacktrace"},
@@ -104,85 +218,334 @@ public class RewriteTemplateGenerator {
 
         @Override
         public Integer call() {
-            MavenArtifactCache mavenArtifactCache = ReadOnlyLocalMavenArtifactCache.mavenLocal().orElse(
-                    new LocalMavenArtifactCache(cacheDir == null ?
-                            Paths.get(System.getProperty("user.home"), ".rewrite-cache", "artifacts") :
-                            Paths.get(cacheDir)));
-
-            String[] gav = dependency.split(":");
-            if (gav.length != 3) {
-                System.out.println("Dependency must be of the form group:artifact:version");
+            Output output = this.output == null ? new Output() : this.output;
+            Profile profile = new Profile();
+            List<Path> classpathEntries = new ArrayList<>();
+            List<String> downloadFailures = new ArrayList<>();
+            try (ClassSource classSource = openClassSource(profile, classpathEntries, downloadFailures)) {
+                for (String downloadFailure : downloadFailures) {
+                    System.err.println(downloadFailure);
+                }
+                StubGenerator stubGenerator = new TemplateStubs()
+                        .withThreads(threads)
+                        .withClosure(closure)
+                        .withUsages(usages == null ? null : Usages.scan(usages))
+                        .withStubCacheDir(stubCacheDir)
+                        .stubGenerator(profile);
+                List<String> selected = types == null ? null : Arrays.asList(types);
+                if (output.typeTable != null) {
+                    try (OutputStream out = profile.emitting(Files.newOutputStream(output.typeTable))) {
+                        stubGenerator.writeTypeTable(classSource, selected, out);
+                    }
+                } else if (output.outputJar != null) {
+                    Map<String, String> sources = TemplateStubs.sources(stubGenerator, classSource, selected);
+                    StubCompiler.Result compiled = profile.time(Profile.Phase.COMPILE, () ->
+                            new StubCompiler(classpathEntries).compile(sources));
+                    for (Map.Entry<String, List<String>> failure : compiled.getFailures().entrySet()) {
+                        System.err.println("Unable to compile the stub for " + failure.getKey() + ": " +
+                                String.join(System.lineSeparator(), failure.getValue()));
+                    }
+                    try (OutputStream out = profile.emitting(Files.newOutputStream(output.outputJar))) {
+                        compiled.writeJar(out);
+                    }
+                } else if (output.outputDir != null) {
+                    Map<String, String> sources = TemplateStubs.sources(stubGenerator, classSource, selected);
+                    StubDirectory stubDirectory = new StubDirectory(output.outputDir);
+                    profile.count(Profile.Counter.BYTES_EMITTED,
+                            profile.time(Profile.Phase.PRINT, () -> stubDirectory.write(sources, threads)));
+                } else {
+                    Writer out = new BufferedWriter(new OutputStreamWriter(profile.emitting(System.out)));
+                    if (output.stream) {
+                        stubGenerator.stream(classSource, selected, out);
+                    } else {
+                        stubGenerator.print(stubGenerator.generate(classSource, selected), out);
+                    }
+                    out.flush();
+                }
+                if (cacheStats) {
+                    System.err.println(stubGenerator.getTypeNameCache());
+                }
+                if (printProfile) {
+                    System.err.print(profile);
+                }
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
                 return CommandLine.ExitCode.USAGE;
+            } catch (IOException e) {
+                if (stacktrace) {
+                    throw new UncheckedIOException(e);
+                }
+                return CommandLine.ExitCode.SOFTWARE;
+            } finally {
+                profile.commit();
             }
 
-            Xml.Document pom = MavenParser.builder()
-                    .build()
-                    .parse("<project>" +
-                            "<modelVersion>4.0.0</modelVersion>" +
-                            "<groupId>org.openrewrite</groupId>" +
-                            "<artifactId>rewrite-template-generator</artifactId>" +
-                            "<version>1</version>" +
-                            "<dependencies>" + "" +
-                            "  <dependency>" +
-                            "    <groupId>" + gav[0] + "</groupId>" +
-                            "    <artifactId>" + gav[1] + "</artifactId>" +
-                            "    <version>" + gav[2] + "</version>" +
-                            "  </dependency>" +
-                            "</dependencies>" +
-                            "</project>")
-                    .get(0);
-
-            MavenArtifactDownloader mavenArtifactDownloader = new MavenArtifactDownloader(mavenArtifactCache, null,
-                    t -> {
-                        throw new IllegalStateException("Unable to download artifact.", t);
-                    });
-
-            //noinspection OptionalGetWithoutIsPresent
-            MavenResolutionResult maven = pom.getMarkers().findFirst(MavenResolutionResult.class).get();
-
-            List<ResolvedDependency> dependencies = maven.getDependencies().values()
-                    .stream()
-                    .flatMap(Collection::stream)
-                    .distinct()
-                    .collect(Collectors.toList());
-            if (dependencies.isEmpty()) {
-                System.out.println("Unable to resolve the dependency");
-                return CommandLine.ExitCode.USAGE;
+            // stubs of types from the jars that were downloaded are still written
+            return downloadFailures.isEmpty() ? CommandLine.ExitCode.OK : CommandLine.ExitCode.SOFTWARE;
+        }
+
+        /**
+         * Only a --dependency goes through Maven, so the rewrite-maven classes are never loaded for local input.
+         *
+         * @param classpathEntries Filled with the jars or directories that the class source reads from.
+         * @param downloadFailures Filled with the transitive dependencies of a --classpath that couldn't be
+         *                         downloaded and are missing from the class source.
+         */
+        private ClassSource openClassSource(Profile profile, List<Path> classpathEntries,
+                                            List<String> downloadFailures) throws IOException {
+            if (input.jar != null || input.classes != null) {
+                Path classes = input.jar != null ? input.jar : input.classes;
+                classpathEntries.add(classes);
+                return TemplateStubs.open(classes, profile);
+            }
+            ArtifactResolver artifactResolver = ArtifactResolver.create(cacheDir, profile);
+            if (classpath) {
+                //noinspection ConstantConditions
+                ArtifactResolver.Classpath resolved = artifactResolver.resolveClasspath(input.dependency,
+                        downloadThreads);
+                downloadFailures.addAll(resolved.getFailures().values());
+                List<Path> jars = resolved.getJars();
+                classpathEntries.addAll(jars);
+                List<JarIndex> jarIndexes = new ArrayList<>(jars.size());
+                try {
+                    for (Path jar : jars) {
+                        jarIndexes.add(profile.time(Profile.Phase.INDEX, () -> JarIndex.open(jar)));
+                    }
+                } catch (IOException e) {
+                    for (JarIndex jarIndex : jarIndexes) {
+                        jarIndex.close();
+                    }
+                    throw e;
+                }
+                return new CompositeClassSource(jarIndexes);
             }
+            //noinspection ConstantConditions
+            Path jar = artifactResolver.resolveArtifact(input.dependency);
+            classpathEntries.add(jar);
+            return profile.time(Profile.Phase.INDEX, () -> JarIndex.open(jar));
+        }
+
+        @Override
+        public int getExitCode() {
+            return exitCode;
+        }
+    }
+
+    @Command(name = "batch", description = "Builds type information for every dependency listed in a manifest.")
+    static class Batch implements Callable<Integer> {
+        @Option(names = "--manifest",
+                description = "A file with one group:artifact:version[=type,type,...] entry per line. " +
+                        "Entries without types generate stubs for every class. Lines starting with # are ignored.",
+                required = true)
+        private Path manifest;
+
+        @Option(names = "--cache-dir",
+                description = "The directory to download Maven artifacts to.")
+        @Nullable
+        private String cacheDir;
+
+        @Option(names = "--stub-cache-dir",
+                description = "A directory to keep the stub of every visited class in, keyed by the class file's " +
+                        "content, so that classes that didn't change between artifact versions aren't visited again.")
+        @Nullable
+        private Path stubCacheDir;
+
+        @Option(names = "--download-threads",
+                description = "Number of dependencies to download concurrently, while classes of the dependencies " +
+                        "already downloaded are visited.",
+                defaultValue = "4")
+        private int downloadThreads;
+
+        @Option(names = "--threads",
+                description = "Number of threads to visit classes on. Output is always in manifest order.",
+                defaultValue = "4")
+        private int threads;
+
+        @Option(names = "--closure",
+                description = "Also generate stubs for the types in the same artifact that the selected types extend, " +
+                        "implement or reference in their public signatures.",
+                defaultValue = "false")
+        private boolean closure;
+
+        @Option(names = "--cache-stats",
+                description = "Print type name cache statistics to stderr.",
+                defaultValue = "false")
+        private boolean cacheStats;
+
+        @Option(names = "--profile",
+                description = "Print the time spent in each phase, counts of classes and bytes read and written, " +
+                        "and the slowest classes to visit to stderr.",
+                defaultValue = "false")
+        private boolean printProfile;
 
-            Path artifact = mavenArtifactDownloader.downloadArtifact(dependencies.iterator().next());
-            if (artifact == null) {
-                System.out.println("Unable to download artifact");
+        @Option(names = {"-s", "--stacktrace"},
+                description = "Print out the stacktrace for all exceptions.",
+                defaultValue = "false")
+        private boolean stacktrace;
+
+        @Override
+        public Integer call() {
+            List<String> entries;
+            try {
+                entries = new ArrayList<>();
+                for (String line : Files.readAllLines(manifest)) {
+                    String entry = line.trim();
+                    if (!entry.isEmpty() && !entry.startsWith("#")) {
+                        entries.add(entry);
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Unable to read manifest " + manifest);
                 return CommandLine.ExitCode.USAGE;
             }
 
-            PublicApiPrinter publicApiPrinter = new PublicApiPrinter();
-            try (FileInputStream fis = new FileInputStream(artifact.toFile());
-                 ZipInputStream zis = new ZipInputStream(fis)) {
-                ZipEntry zipEntry;
-                while ((zipEntry = zis.getNextEntry()) != null) {
-                    String name = zipEntry.getName();
-                    if (!zipEntry.isDirectory() && name.endsWith(".class")) {
-                        String fqn = name.replace('/', '.').replaceFirst("\\.class$", "");
-                        if(Arrays.stream(types).anyMatch(fqn::equals)) {
-                            new ClassReader(zis).accept(publicApiPrinter, ClassReader.SKIP_DEBUG);
-                        }
+            List<StubPipeline.Artifact> artifacts = new ArrayList<>(entries.size());
+            for (String entry : entries) {
+                int typesStart = entry.indexOf('=');
+                artifacts.add(typesStart == -1 ?
+                        new StubPipeline.Artifact(entry, null) :
+                        new StubPipeline.Artifact(entry.substring(0, typesStart).trim(),
+                                Arrays.asList(entry.substring(typesStart + 1).trim().split("\\s*,\\s*"))));
+            }
+
+            Profile profile = new Profile();
+            // entries of a manifest can name the same artifact with different types
+            StubGenerator stubGenerator = new StubGenerator(1, closure, stubCache(stubCacheDir), null,
+                    SymbolTable.shared(), true, profile);
+            StubPipeline stubPipeline = new StubPipeline(ArtifactResolver.create(cacheDir, profile), stubGenerator,
+                    downloadThreads, threads);
+
+            int[] exitCode = {CommandLine.ExitCode.OK};
+            try {
+                Writer stdout = new BufferedWriter(new OutputStreamWriter(profile.emitting(System.out)));
+                stubPipeline.run(artifacts, stdout, (artifact, cause, out) -> {
+                    if (stacktrace) {
+                        out.flush();
+                        throw new IllegalStateException("Unable to generate stubs for " + artifact.getDependency(), cause);
                     }
-                }
-                publicApiPrinter.print();
+                    out.write(String.valueOf(cause.getMessage()));
+                    out.write(System.lineSeparator());
+                    exitCode[0] = CommandLine.ExitCode.SOFTWARE;
+                });
             } catch (IOException e) {
-                if (stacktrace) {
-                    throw new UncheckedIOException(e);
-                }
-                return CommandLine.ExitCode.SOFTWARE;
+                throw new UncheckedIOException(e);
+            } finally {
+                profile.commit();
+            }
+            if (cacheStats) {
+                System.err.println(stubGenerator.getTypeNameCache());
+            }
+            if (printProfile) {
+                System.err.print(profile);
             }
+            return exitCode[0];
+        }
+    }
 
+    @Command(name = "serve", description = "Keeps a warm process that answers stub requests read as JSON lines " +
+            "from stdin, until stdin is closed.")
+    static class Serve implements Callable<Integer> {
+        @Option(names = "--cache-dir",
+                description = "The directory to download Maven artifacts to.")
+        @Nullable
+        private String cacheDir;
+
+        @Option(names = "--stub-cache-dir",
+                description = "A directory to keep the stub of every visited class in, keyed by the class file's " +
+                        "content, so that classes that didn't change between artifact versions aren't visited again.")
+        @Nullable
+        private Path stubCacheDir;
+
+        @Option(names = "--threads",
+                description = "Number of requests to answer concurrently.",
+                defaultValue = "4")
+        private int threads;
+
+        @Option(names = "--max-cached-artifacts",
+                description = "Number of resolved artifacts and jar indexes to keep in memory between requests.",
+                defaultValue = "64")
+        private int maxCachedArtifacts;
+
+        @Option(names = "--profile",
+                description = "Print the time spent in each phase, counts of classes and bytes read and written, " +
+                        "and the slowest classes to visit to stderr once stdin is closed.",
+                defaultValue = "false")
+        private boolean printProfile;
+
+        @Override
+        public Integer call() {
+            Profile profile = new Profile();
+            StubServer stubServer = new StubServer(ArtifactResolver.create(cacheDir, profile), stubCache(stubCacheDir),
+                    profile, maxCachedArtifacts);
+            try {
+                stubServer.serve(new BufferedReader(new InputStreamReader(System.in)),
+                        new BufferedWriter(new OutputStreamWriter(profile.emitting(System.out))), threads);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                profile.commit();
+            }
+            if (printProfile) {
+                System.err.print(profile);
+            }
             return CommandLine.ExitCode.OK;
         }
+    }
+
+    @Command(name = "verify", description = "Type-checks stubs as printed by depends-on or batch and reports the " +
+            "compiler errors of every stub that doesn't compile.")
+    static class Verify implements Callable<Integer> {
+        @Option(names = "--stubs",
+                description = "A file of stubs separated by ---. Stubs are read from stdin when omitted.")
+        @Nullable
+        private Path stubs;
+
+        @Option(names = "--jars",
+                description = "Jars or class directories that the stubs reference types from, like the " +
+                        "dependencies of the artifact they were generated from.",
+                split = ",")
+        @Nullable
+        private List<Path> jars;
+
+        @Option(names = "--threads",
+                description = "Number of threads to type-check stubs on. Errors are the same regardless of thread count.",
+                defaultValue = "4")
+        private int threads;
+
+        @Option(names = "--profile",
+                description = "Print the time spent reading and type-checking stubs to stderr.",
+                defaultValue = "false")
+        private boolean printProfile;
 
         @Override
-        public int getExitCode() {
-            return exitCode;
+        public Integer call() {
+            Profile profile = new Profile();
+            Map<String, List<String>> failures;
+            int verified;
+            try (BufferedReader in = stubs == null ?
+                    new BufferedReader(new InputStreamReader(System.in)) :
+                    Files.newBufferedReader(stubs)) {
+                Map<String, String> sources = StubCompiler.readStubs(in);
+                verified = sources.size();
+                StubCompiler stubCompiler = new StubCompiler(jars == null ? Collections.emptyList() : jars);
+                failures = profile.time(Profile.Phase.COMPILE, () -> stubCompiler.verify(sources, threads));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                profile.commit();
+            }
+
+            for (Map.Entry<String, List<String>> failure : failures.entrySet()) {
+                System.out.println(failure.getKey().isEmpty() ? "(no stub)" : failure.getKey());
+                for (String message : failure.getValue()) {
+                    System.out.println("  " + message.replace("\n", "\n  "));
+                }
+            }
+            System.err.println("Verified " + verified + " stubs, " + failures.size() + " with errors.");
+            if (printProfile) {
+                System.err.print(profile);
+            }
+            return failures.isEmpty() ? CommandLine.ExitCode.OK : CommandLine.ExitCode.SOFTWARE;
         }
     }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Rendered stubs of individual classes, keyed by a hash of the class file bytes and the generator that rendered
+ * them. Consecutive versions of a library share most of their class files byte for byte, so only the classes
+ * that changed have to be visited again. Safe to share between threads and processes.
+ */
+class StubCache {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path root;
+    private final byte[] generatorFingerprint;
+
+    StubCache(Path root) {
+        this.root = root;
+        this.generatorFingerprint = generatorFingerprint();
+    }
+
+    /**
+     * @return A key that only changes when the class file or the way stubs are rendered changes.
+     */
+    String key(byte[] classBytes) {
+        MessageDigest digest = sha256();
+        digest.update(generatorFingerprint);
+        digest.update(classBytes);
+        return hex(digest.digest());
+    }
+
+    @Nullable
+    Stub get(String key) {
+        Path entry = entry(key);
+        if (!Files.exists(entry)) {
+            return null;
+        }
+
+        String stub;
+        try {
+            stub = new String(Files.readAllBytes(entry), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+        int endOfName = stub.indexOf('\n');
+        return endOfName == -1 ? null : new Stub(stub.substring(0, endOfName), stub.substring(endOfName + 1));
+    }
+
+    void put(String key, Stub stub) {
+        Path entry = entry(key);
+        Path tmp = null;
+        try {
+            Files.createDirectories(entry.getParent());
+            // write to a temporary file first so that concurrent readers never see a partial entry
+            tmp = Files.createTempFile(entry.getParent(), key, ".tmp");
+            Files.write(tmp, (stub.getName() + '\n' + stub.getContents()).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException ignored) {
+            // the cache is an optimization, so a failure to write it is not an error
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // as with the write itself, nothing depends on this succeeding
+                }
+            }
+        }
+    }
+
+    private Path entry(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    /**
+     * The generator version, plus the classes that render stubs so that a changed build of the same version
+     * doesn't reuse stale stubs.
+     */
+    private static byte[] generatorFingerprint() {
+        MessageDigest digest = sha256();
+        digest.update(RewriteTemplateGenerator.VERSION.getBytes(StandardCharsets.UTF_8));
+        for (Class<?> renderer : new Class<?>[]{PublicApiPrinter.class, TypeNameCache.class, TypeNameCache.PackageTypeNames.class}) {
+            String resource = renderer.getName().substring(renderer.getPackage().getName().length() + 1) + ".class";
+            try (InputStream is = renderer.getResourceAsStream(resource)) {
+                if (is != null) {
+                    digest.update(is.readAllBytes());
+                }
+            } catch (IOException ignored) {
+                // the version alone still identifies released generators
+            }
+        }
+        return digest.digest();
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported by every JVM.", e);
+        }
+    }
+
+    static String hex(byte[] hash) {
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    static class Stub {
+        private final String name;
+        private final CharSequence contents;
+
+        /**
+         * @param name     Internal name of the class.
+         * @param contents The class as rendered by {@link PublicApiPrinter}, without its closing brace.
+         */
+        Stub(String name, CharSequence contents) {
+            this.name = name;
+            this.contents = contents;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        CharSequence getContents() {
+            return contents;
+        }
+    }
+}
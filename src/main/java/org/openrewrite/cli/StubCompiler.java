@@ -0,0 +1,380 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import com.sun.source.util.JavacTask;
+
+import javax.tools.*;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles stub sources in memory with the system Java compiler, in one compilation task for all of them, so that
+ * the stubs can be shipped as a jar of class files rather than as source that has to be parsed on every use.
+ */
+class StubCompiler {
+    private static final List<String> OPTIONS = Arrays.asList("-proc:none", "-g:none", "-nowarn", "-implicit:none",
+            "-Xmaxerrs", String.valueOf(Integer.MAX_VALUE));
+    // stubs on the source path are never newer than the classes they were generated from, so javac's default of
+    // the newer of the two would resolve to the classes whenever they are on the classpath
+    private static final List<String> VERIFY_OPTIONS = concat(OPTIONS, "-Xprefer:source");
+    private static final Pattern STUB_NAME = Pattern.compile("^(?:package ([\\w.]+);)?[\\s\\S]*?(?:class|interface|enum) ([^\\s{<]+)");
+
+    private final JavaCompiler compiler;
+    private final List<Path> classpath;
+
+    /**
+     * @param classpath Jars or class directories that the stubs reference types from. The classes that stubs are
+     *                  generated for can be on it too, since the stubs take precedence over them.
+     */
+    StubCompiler(List<Path> classpath) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("Compiling stubs requires a JDK, not a JRE.");
+        }
+        this.compiler = compiler;
+        this.classpath = classpath;
+    }
+
+    /**
+     * A stub that fails to compile, e.g. because it references a type that isn't on the classpath, is left out
+     * along with its diagnostics, and the remaining stubs are compiled again, so that one broken type doesn't
+     * cost every other type.
+     *
+     * @param sources Stub sources by fully qualified name of their top-level class.
+     */
+    Result compile(Map<String, String> sources) throws IOException {
+        Map<String, String> remaining = new LinkedHashMap<>(sources);
+        Map<String, List<String>> failures = new TreeMap<>();
+
+        StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(null, Locale.ROOT, null);
+        standardFileManager.setLocationFromPaths(StandardLocation.CLASS_PATH, classpath);
+        try (InMemoryFileManager fileManager = new InMemoryFileManager(standardFileManager)) {
+            while (!remaining.isEmpty()) {
+                List<JavaFileObject> compilationUnits = new ArrayList<>(remaining.size());
+                for (Map.Entry<String, String> source : remaining.entrySet()) {
+                    compilationUnits.add(new StubSource(source.getKey(), source.getValue()));
+                }
+
+                fileManager.classes.clear();
+                DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+                if (compiler.getTask(null, fileManager, diagnostics, OPTIONS, null, compilationUnits).call()) {
+                    return new Result(new TreeMap<>(fileManager.classes), failures);
+                }
+
+                int failed = 0;
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    if (diagnostic.getKind() == Diagnostic.Kind.ERROR && diagnostic.getSource() instanceof StubSource) {
+                        String fqn = ((StubSource) diagnostic.getSource()).fqn;
+                        if (remaining.remove(fqn) != null) {
+                            failed++;
+                        }
+                        failures.computeIfAbsent(fqn, f -> new ArrayList<>())
+                                .add(diagnostic.getLineNumber() + ": " + diagnostic.getMessage(Locale.ROOT));
+                    }
+                }
+                if (failed == 0) {
+                    // errors that can't be attributed to a stub, like a bad classpath entry, fail every stub
+                    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                        failures.computeIfAbsent("", f -> new ArrayList<>()).add(diagnostic.getMessage(Locale.ROOT));
+                    }
+                    break;
+                }
+            }
+        }
+        return new Result(Collections.emptyMap(), failures);
+    }
+
+    /**
+     * Type-checks stubs without generating class files. The stubs are split into one contiguous run of names per
+     * thread, each attributed by its own compilation task, with every stub on an in-memory source path that takes
+     * precedence over the classpath, so that references across runs resolve to the stubs rather than to the
+     * classes they were generated from, even when those are on the classpath too. Stubs
+     * referenced from another run are only parsed and entered there, never attributed twice.
+     *
+     * @param sources Stub sources by fully qualified name of their top-level class.
+     * @return Compiler errors by fully qualified name of the stub they are in, in name order. Empty when every
+     * stub compiles.
+     */
+    Map<String, List<String>> verify(Map<String, String> sources, int threads) throws IOException {
+        List<String> names = new ArrayList<>(new TreeSet<>(sources.keySet()));
+        int runs = Math.max(1, Math.min(threads, names.size()));
+        int runSize = (names.size() + runs - 1) / runs;
+
+        Map<String, StubSource> stubs = new HashMap<>();
+        // every run looks up each package it references, so stubs are indexed by package once for all of them
+        NavigableMap<String, List<StubSource>> sourcePath = new TreeMap<>();
+        for (String name : names) {
+            StubSource stub = new StubSource(name, sources.get(name));
+            stubs.put(name, stub);
+            int lastDot = name.lastIndexOf('.');
+            sourcePath.computeIfAbsent(lastDot == -1 ? "" : name.substring(0, lastDot), p -> new ArrayList<>())
+                    .add(stub);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(runs);
+        try {
+            List<Future<Map<String, List<String>>>> verifications = new ArrayList<>(runs);
+            for (int start = 0; start < names.size(); start += runSize) {
+                List<String> run = names.subList(start, Math.min(names.size(), start + runSize));
+                verifications.add(executor.submit(() -> verify(run, stubs, sourcePath)));
+            }
+
+            List<Map<String, List<String>>> runFailures = new ArrayList<>(verifications.size());
+            for (Future<Map<String, List<String>>> verification : verifications) {
+                runFailures.add(verification.get());
+            }
+            return merge(runFailures);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while verifying stubs.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to verify stubs.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, List<String>> verify(List<String> run, Map<String, StubSource> stubs,
+                                            NavigableMap<String, List<StubSource>> sourcePath) throws IOException {
+        List<JavaFileObject> compilationUnits = new ArrayList<>(run.size());
+        for (String name : run) {
+            compilationUnits.add(stubs.get(name));
+        }
+
+        Set<String> runNames = new HashSet<>(run);
+        Map<String, List<String>> failures = new TreeMap<>();
+        // file managers aren't thread-safe, so every run has its own
+        StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(null, Locale.ROOT, null);
+        standardFileManager.setLocationFromPaths(StandardLocation.CLASS_PATH, classpath);
+        try (InMemoryFileManager fileManager = new InMemoryFileManager(standardFileManager, sourcePath)) {
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            JavacTask task = (JavacTask) compiler.getTask(null, fileManager, diagnostics, VERIFY_OPTIONS, null,
+                    compilationUnits);
+            task.analyze();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+                    continue;
+                }
+                if (diagnostic.getSource() instanceof StubSource) {
+                    // errors in stubs of another run are reported by that run
+                    String fqn = ((StubSource) diagnostic.getSource()).fqn;
+                    if (runNames.contains(fqn)) {
+                        failures.computeIfAbsent(fqn, f -> new ArrayList<>())
+                                .add(diagnostic.getLineNumber() + ": " + diagnostic.getMessage(Locale.ROOT));
+                    }
+                } else {
+                    JavaFileObject source = diagnostic.getSource();
+                    String message = diagnostic.getMessage(Locale.ROOT);
+                    failures.computeIfAbsent("", f -> new ArrayList<>()).add(source == null ? message :
+                            source.getName() + ":" + diagnostic.getLineNumber() + ": " + message);
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Stubs are only reported by the run they are in, but every run reports errors outside of stubs, like those
+     * in a classpath entry, so those are kept once per source, position and message.
+     *
+     * @param runFailures Compiler errors of each run by fully qualified name of the stub they are in.
+     */
+    static Map<String, List<String>> merge(List<Map<String, List<String>>> runFailures) {
+        Map<String, Set<String>> merged = new TreeMap<>();
+        for (Map<String, List<String>> failures : runFailures) {
+            for (Map.Entry<String, List<String>> stubFailures : failures.entrySet()) {
+                merged.computeIfAbsent(stubFailures.getKey(), f -> new LinkedHashSet<>())
+                        .addAll(stubFailures.getValue());
+            }
+        }
+
+        Map<String, List<String>> failures = new TreeMap<>();
+        for (Map.Entry<String, Set<String>> stubFailures : merged.entrySet()) {
+            failures.put(stubFailures.getKey(), new ArrayList<>(stubFailures.getValue()));
+        }
+        return failures;
+    }
+
+    private static List<String> concat(List<String> options, String option) {
+        List<String> concatenated = new ArrayList<>(options);
+        concatenated.add(option);
+        return Collections.unmodifiableList(concatenated);
+    }
+
+    /**
+     * Splits stubs as printed by {@link PublicApiPrinter#print(java.io.Writer)} into sources.
+     *
+     * @return Stub sources by fully qualified name of their top-level class.
+     */
+    static Map<String, String> readStubs(BufferedReader in) throws IOException {
+        Map<String, String> sources = new LinkedHashMap<>();
+        StringBuilder source = new StringBuilder();
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            if ("---".equals(line)) {
+                addStub(source, sources);
+                source.setLength(0);
+            } else {
+                source.append(line).append('\n');
+            }
+        }
+        addStub(source, sources);
+        return sources;
+    }
+
+    private static void addStub(CharSequence source, Map<String, String> sources) {
+        Matcher name = STUB_NAME.matcher(source);
+        if (name.find()) {
+            sources.put(name.group(1) == null ? name.group(2) : name.group(1) + '.' + name.group(2), source.toString());
+        }
+    }
+
+    static class Result {
+        private final Map<String, byte[]> classes;
+        private final Map<String, List<String>> failures;
+
+        private Result(Map<String, byte[]> classes, Map<String, List<String>> failures) {
+            this.classes = classes;
+            this.failures = failures;
+        }
+
+        /**
+         * @return Class files by internal name.
+         */
+        Map<String, byte[]> getClasses() {
+            return classes;
+        }
+
+        /**
+         * @return Compiler errors by fully qualified name of the stub that was left out.
+         */
+        Map<String, List<String>> getFailures() {
+            return failures;
+        }
+
+        void writeJar(OutputStream out) throws IOException {
+            try (JarOutputStream jar = new JarOutputStream(out)) {
+                for (Map.Entry<String, byte[]> clazz : classes.entrySet()) {
+                    jar.putNextEntry(new JarEntry(clazz.getKey() + ".class"));
+                    jar.write(clazz.getValue());
+                    jar.closeEntry();
+                }
+            }
+        }
+    }
+
+    private static class StubSource extends SimpleJavaFileObject {
+        private final String fqn;
+        private final String source;
+
+        private StubSource(String fqn, String source) {
+            super(URI.create("string:///" + fqn.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.fqn = fqn;
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, byte[]> classes = new HashMap<>();
+
+        /**
+         * Stubs by package, served as the source path.
+         */
+        private final NavigableMap<String, List<StubSource>> sourcePath;
+
+        private InMemoryFileManager(StandardJavaFileManager fileManager) {
+            this(fileManager, Collections.emptyNavigableMap());
+        }
+
+        private InMemoryFileManager(StandardJavaFileManager fileManager,
+                                    NavigableMap<String, List<StubSource>> sourcePath) {
+            super(fileManager);
+            this.sourcePath = sourcePath;
+        }
+
+        @Override
+        public boolean hasLocation(Location location) {
+            return location == StandardLocation.SOURCE_PATH ? !sourcePath.isEmpty() : super.hasLocation(location);
+        }
+
+        @Override
+        public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds,
+                                             boolean recurse) throws IOException {
+            if (location != StandardLocation.SOURCE_PATH) {
+                return super.list(location, packageName, kinds, recurse);
+            }
+            if (!kinds.contains(JavaFileObject.Kind.SOURCE)) {
+                return Collections.emptyList();
+            }
+            List<JavaFileObject> stubs = new ArrayList<>(sourcePath.getOrDefault(packageName, Collections.emptyList()));
+            if (recurse) {
+                // '/' sorts right after '.', so the range holds exactly the names starting with the package and a dot
+                Collection<List<StubSource>> subpackages = packageName.isEmpty() ?
+                        sourcePath.tailMap("", false).values() :
+                        sourcePath.subMap(packageName + '.', true, packageName + '/', false).values();
+                for (List<StubSource> subpackage : subpackages) {
+                    stubs.addAll(subpackage);
+                }
+            }
+            return stubs;
+        }
+
+        @Override
+        public String inferBinaryName(Location location, JavaFileObject file) {
+            return file instanceof StubSource ? ((StubSource) file).fqn : super.inferBinaryName(location, file);
+        }
+
+        @Override
+        public boolean isSameFile(FileObject a, FileObject b) {
+            return a instanceof StubSource || b instanceof StubSource ? a == b : super.isSameFile(a, b);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) {
+            String internalName = className.replace('.', '/');
+            return new SimpleJavaFileObject(URI.create("mem:///" + internalName + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close() {
+                            classes.put(internalName, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Stubs laid out as source files, one per top-level class in its package's directory, with an index of every
+ * stub, so that a consumer can read the few stubs it needs without reading the rest. Each line of the index is
+ * the fully qualified name, the path relative to the directory with '/' separators, and the size in bytes,
+ * separated by tabs, in name order.
+ */
+class StubDirectory {
+    static final String INDEX = "stubs.index";
+
+    private final Path root;
+
+    StubDirectory(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Writes the stub files on the given number of threads, and the index once every file is written.
+     *
+     * @param sources Stub sources by fully qualified name of their top-level class.
+     * @return The number of bytes of stub files written.
+     */
+    long write(Map<String, String> sources, int threads) throws IOException {
+        Files.createDirectories(root);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            Map<String, Future<Entry>> written = new TreeMap<>();
+            for (Map.Entry<String, String> source : sources.entrySet()) {
+                written.put(source.getKey(), executor.submit(() -> write(source.getKey(), source.getValue())));
+            }
+
+            long bytes = 0;
+            try (BufferedWriter index = Files.newBufferedWriter(root.resolve(INDEX))) {
+                for (Map.Entry<String, Future<Entry>> entry : written.entrySet()) {
+                    Entry stub = entry.getValue().get();
+                    index.write(entry.getKey() + '\t' + stub.path + '\t' + stub.size + '\n');
+                    bytes += stub.size;
+                }
+            }
+            return bytes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing stubs.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to write stub.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Entry write(String fqn, String source) throws IOException {
+        String path = fqn.replace('.', '/') + ".java";
+        Path file = root.resolve(path);
+        Files.createDirectories(file.getParent());
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        Files.write(file, bytes);
+        return new Entry(path, bytes.length);
+    }
+
+    private static class Entry {
+        /**
+         * Path of the stub relative to the directory, with '/' separators.
+         */
+        private final String path;
+
+        private final long size;
+
+        private Entry(String path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Visits the selected classes of a jar or class directory with {@link PublicApiPrinter}.
+ */
+class StubGenerator {
+    private final int threads;
+    private final boolean closure;
+    private final TypeNameCache typeNameCache;
+
+    @Nullable
+    private final StubCache stubCache;
+
+    @Nullable
+    private final Usages usages;
+
+    private final SymbolTable symbolTable;
+    private final boolean reuseStubs;
+    private final Profile profile;
+
+    /**
+     * @param closure   Whether to also visit the types in the same class source that the selected types reference.
+     * @param stubCache Rendered stubs of classes seen before, or null to always visit classes.
+     */
+    StubGenerator(int threads, boolean closure, @Nullable StubCache stubCache, Profile profile) {
+        this(threads, closure, stubCache, null, profile);
+    }
+
+    /**
+     * @param usages The names used by templates, to visit only the types they use and print only the members they
+     *               use, or null to visit the selected types in full.
+     */
+    StubGenerator(int threads, boolean closure, @Nullable StubCache stubCache, @Nullable Usages usages, Profile profile) {
+        this(threads, closure, stubCache, usages, SymbolTable.shared(), false, profile);
+    }
+
+    /**
+     * @param symbolTable Where rendered names are held, usually the one the process shares.
+     * @param reuseStubs  Whether to also hold rendered stubs there, for a caller that generates stubs for the same
+     *                    artifacts again, like a server. One-shot and streaming runs never read them back.
+     */
+    StubGenerator(int threads, boolean closure, @Nullable StubCache stubCache, @Nullable Usages usages,
+                  SymbolTable symbolTable, boolean reuseStubs, Profile profile) {
+        this.threads = threads;
+        this.closure = closure;
+        // cached stubs have every public member, so they can't stand in for pruned ones
+        this.stubCache = usages == null ? stubCache : null;
+        this.usages = usages;
+        this.symbolTable = symbolTable;
+        this.reuseStubs = reuseStubs;
+        this.profile = profile;
+        this.typeNameCache = new TypeNameCache(symbolTable, profile);
+    }
+
+    TypeNameCache getTypeNameCache() {
+        return typeNameCache;
+    }
+
+    Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @param types Fully qualified names or {@link TypeSelector} patterns of the classes to visit, or null to visit
+     *              every class in the source.
+     */
+    PublicApiPrinter generate(ClassSource classSource, @Nullable Collection<String> types) throws IOException {
+        Selection selection = select(classSource, types, false);
+        return threads > 1 ?
+                visitInParallel(selection.names, selection) :
+                visit(selection.names, selection);
+    }
+
+    /**
+     * Like {@link #generate(ClassSource, Collection)} followed by {@link PublicApiPrinter#print(Writer)}, except
+     * that each top-level class is written as soon as it and its nested classes are visited and is then released,
+     * so memory use doesn't grow with the size of the artifact. Output is identical.
+     */
+    void stream(ClassSource classSource, @Nullable Collection<String> types, Writer out) throws IOException {
+        stream(classSource, types, printer -> print(printer, out));
+    }
+
+    /**
+     * Hands each top-level class, visited along with its nested classes, to a consumer in name order, on the
+     * calling thread, as soon as it and every class before it are visited.
+     */
+    void stream(ClassSource classSource, @Nullable Collection<String> types, TopLevelConsumer consumer) throws IOException {
+        Selection selection = select(classSource, types, true);
+        List<List<String>> topLevelGroups = topLevelGroups(selection.names);
+
+        if (threads <= 1) {
+            for (List<String> topLevelGroup : topLevelGroups) {
+                consumer.accept(visit(topLevelGroup, selection));
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Deque<Future<PublicApiPrinter>> inFlight = new ArrayDeque<>();
+            for (List<String> topLevelGroup : topLevelGroups) {
+                inFlight.add(executor.submit(() -> visit(topLevelGroup, selection)));
+                if (inFlight.size() >= threads * 2) {
+                    consumer.accept(inFlight.poll().get());
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                consumer.accept(inFlight.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while visiting classes.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to visit class.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the selected classes as a type table rather than as source, in name order.
+     */
+    void writeTypeTable(ClassSource classSource, @Nullable Collection<String> types, OutputStream out) throws IOException {
+        Selection selection = select(classSource, types, true);
+        try (TypeTableWriter typeTableWriter = new TypeTableWriter(out, selection.usages)) {
+            ClassVisitor classVisitor = typeTableWriter.classVisitor();
+            for (String fqn : new TreeSet<>(selection.names)) {
+                byte[] classBytes = selection.read(fqn);
+                if (classBytes != null) {
+                    try (Profile.Timer timer = profile.start(Profile.Phase.VISIT)) {
+                        timer.subject(fqn);
+                        new ClassReader(classBytes).accept(classVisitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                    }
+                    profile.count(Profile.Counter.CLASSES_VISITED, 1);
+                    profile.count(Profile.Counter.CLASSES_EMITTED, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Fully qualified names in name order, grouped by top-level class.
+     */
+    static List<List<String>> topLevelGroups(Collection<String> names) {
+        // in name order, nested classes directly follow their top-level class because '$' sorts
+        // before every other character that can follow a class name
+        List<List<String>> topLevelGroups = new ArrayList<>();
+        List<String> group = null;
+        String topLevel = null;
+        for (String fqn : new TreeSet<>(names)) {
+            int nested = fqn.indexOf('$');
+            String fqnTopLevel = nested == -1 ? fqn : fqn.substring(0, nested);
+            if (!fqnTopLevel.equals(topLevel)) {
+                topLevel = fqnTopLevel;
+                group = new ArrayList<>();
+                topLevelGroups.add(group);
+            }
+            group.add(fqn);
+        }
+        return topLevelGroups;
+    }
+
+    /**
+     * @param release Whether classes that are held in memory for the closure can be dropped once they are read.
+     */
+    Selection select(ClassSource classSource, @Nullable Collection<String> types, boolean release) throws IOException {
+        profile.count(Profile.Counter.CLASSES_SCANNED, classSource.getClassNames().size());
+        classSource = profile.inflating(classSource);
+
+        Collection<String> selected = types == null ? classSource.getClassNames() : select(classSource, types);
+        if (usages != null) {
+            List<String> used = new ArrayList<>();
+            for (String fqn : selected) {
+                if (usages.isTypeUsed(fqn)) {
+                    used.add(fqn);
+                }
+            }
+            selected = used;
+        }
+
+        if (closure) {
+            TypeClosure typeClosure = new TypeClosure(classSource, usages);
+            Map<String, byte[]> classes = typeClosure.resolve(selected);
+            if (release) {
+                Map<String, byte[]> unreleased = new ConcurrentHashMap<>(classes);
+                return new Selection(new ArrayList<>(classes.keySet()), unreleased::remove, classSource,
+                        typeClosure.getUsages());
+            }
+            return new Selection(classes.keySet(), classes::get, classSource, typeClosure.getUsages());
+        }
+
+        return new Selection(selected, classSource::read, classSource, usages);
+    }
+
+    /**
+     * @return The stub of a selected class that was rendered from the same artifact before, by this or any other
+     * generator that reuses stubs, so that the class needn't be read or visited again.
+     */
+    @Nullable
+    CharSequence rendered(Selection selection, String fqn) {
+        String artifactHash = artifactHash(selection, fqn);
+        return artifactHash == null ? null : symbolTable.getStub(artifactHash, fqn.replace('.', '/'));
+    }
+
+    @Nullable
+    private String artifactHash(Selection selection, String fqn) {
+        return reuseStubs && usages == null ? selection.classSource.getArtifactHash(fqn) : null;
+    }
+
+    /**
+     * Visits classes that were already read, e.g. on another thread.
+     *
+     * @param classes  Class file bytes by fully qualified name.
+     * @param rendered Stubs returned by {@link #rendered(Selection, String)} for classes that weren't read, by fully
+     *                 qualified name.
+     */
+    PublicApiPrinter visit(Selection selection, Map<String, byte[]> classes, Map<String, CharSequence> rendered) {
+        PublicApiPrinter publicApiPrinter = new PublicApiPrinter(typeNameCache, selection.usages);
+        for (Map.Entry<String, byte[]> classBytes : classes.entrySet()) {
+            visit(selection, classBytes.getKey(), classBytes.getValue(), publicApiPrinter);
+        }
+        for (Map.Entry<String, CharSequence> stub : rendered.entrySet()) {
+            profile.count(Profile.Counter.CLASSES_EMITTED, 1);
+            publicApiPrinter.add(stub.getKey().replace('.', '/'), stub.getValue());
+        }
+        return publicApiPrinter;
+    }
+
+    private static Collection<String> select(ClassSource classSource, Collection<String> types) {
+        TypeSelector typeSelector = TypeSelector.compile(types);
+        Set<String> exactNames = typeSelector.getExactNames();
+        if (exactNames != null) {
+            return exactNames;
+        }
+
+        List<String> selected = new ArrayList<>();
+        for (String fqn : classSource.getClassNames()) {
+            if (typeSelector.matches(fqn)) {
+                selected.add(fqn);
+            }
+        }
+        return selected;
+    }
+
+    private PublicApiPrinter visit(Collection<String> selected, Selection selection) throws IOException {
+        PublicApiPrinter publicApiPrinter = new PublicApiPrinter(typeNameCache, selection.usages);
+        for (String fqn : selected) {
+            visit(selection, fqn, publicApiPrinter);
+        }
+        return publicApiPrinter;
+    }
+
+    private PublicApiPrinter visitInParallel(Collection<String> selected, Selection selection) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<PublicApiPrinter>> visits = new ArrayList<>(selected.size());
+            for (String fqn : selected) {
+                visits.add(executor.submit(() -> {
+                    PublicApiPrinter classPrinter = new PublicApiPrinter(typeNameCache, selection.usages);
+                    visit(selection, fqn, classPrinter);
+                    return classPrinter;
+                }));
+            }
+
+            PublicApiPrinter publicApiPrinter = new PublicApiPrinter(typeNameCache, selection.usages);
+            for (Future<PublicApiPrinter> visit : visits) {
+                publicApiPrinter.merge(visit.get());
+            }
+            return publicApiPrinter;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while visiting classes.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to visit class.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void visit(Selection selection, String fqn, PublicApiPrinter publicApiPrinter) throws IOException {
+        CharSequence rendered = rendered(selection, fqn);
+        if (rendered != null) {
+            profile.count(Profile.Counter.CLASSES_EMITTED, 1);
+            publicApiPrinter.add(fqn.replace('.', '/'), rendered);
+            return;
+        }
+
+        byte[] bytes = selection.read(fqn);
+        if (bytes != null) {
+            visit(selection, fqn, bytes, publicApiPrinter);
+        }
+    }
+
+    private void visit(Selection selection, String fqn, byte[] bytes, PublicApiPrinter publicApiPrinter) {
+        visit(bytes, publicApiPrinter);
+        String artifactHash = artifactHash(selection, fqn);
+        if (artifactHash != null) {
+            String name = fqn.replace('.', '/');
+            CharSequence contents = publicApiPrinter.getContents(name);
+            if (contents != null) {
+                symbolTable.putStub(artifactHash, name, contents);
+            }
+        }
+    }
+
+    private void visit(byte[] bytes, PublicApiPrinter publicApiPrinter) {
+        ClassReader classReader = new ClassReader(bytes);
+        if (!isStubbed(classReader)) {
+            return;
+        }
+
+        profile.count(Profile.Counter.CLASSES_EMITTED, 1);
+        if (stubCache == null) {
+            visit(classReader, publicApiPrinter);
+            return;
+        }
+
+        String key = stubCache.key(bytes);
+        StubCache.Stub cached = stubCache.get(key);
+        if (cached != null) {
+            publicApiPrinter.add(cached.getName(), cached.getContents());
+            return;
+        }
+
+        visit(classReader, publicApiPrinter);
+        CharSequence contents = publicApiPrinter.getContents(classReader.getClassName());
+        if (contents != null) {
+            stubCache.put(key, new StubCache.Stub(classReader.getClassName(), contents));
+        }
+    }
+
+    private void visit(ClassReader classReader, PublicApiPrinter publicApiPrinter) {
+        try (Profile.Timer timer = profile.start(Profile.Phase.VISIT)) {
+            timer.subject(classReader.getClassName().replace('/', '.'));
+            accept(classReader, publicApiPrinter);
+        }
+        profile.count(Profile.Counter.CLASSES_VISITED, 1);
+    }
+
+    /**
+     * Prints the classes visited by a printer that this generator returned.
+     */
+    void print(PublicApiPrinter publicApiPrinter, Writer out) throws IOException {
+        try (Profile.Timer ignored = profile.start(Profile.Phase.PRINT)) {
+            publicApiPrinter.print(out);
+        }
+    }
+
+    /**
+     * Reads only the header of a class that isn't public, since no member of it is printed, and skips the code,
+     * debug information and frames of the rest, which aren't printed either.
+     */
+    static void accept(ClassReader classReader, PublicApiPrinter publicApiPrinter) {
+        int access = classReader.getAccess();
+        if ((access & Opcodes.ACC_PUBLIC) == 0) {
+            publicApiPrinter.visit(classReader.readInt(4), access, classReader.getClassName(), null,
+                    classReader.getSuperName(), classReader.getInterfaces());
+            return;
+        }
+        classReader.accept(publicApiPrinter, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    }
+
+    /**
+     * Decides from the class header alone whether a class has a stub at all. Synthetic classes like package-info,
+     * module-info and anonymous and local classes, which source can't reference, don't.
+     */
+    static boolean isStubbed(ClassReader classReader) {
+        if ((classReader.getAccess() & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_MODULE)) != 0) {
+            return false;
+        }
+        String name = classReader.getClassName();
+        for (int nested = name.indexOf('$'); nested != -1; nested = name.indexOf('$', nested + 1)) {
+            if (nested + 1 < name.length() && Character.isDigit(name.charAt(nested + 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static class Selection {
+        private final Collection<String> names;
+        private final ClassBytes classBytes;
+        private final ClassSource classSource;
+
+        @Nullable
+        private final Usages usages;
+
+        private Selection(Collection<String> names, ClassBytes classBytes, ClassSource classSource,
+                          @Nullable Usages usages) {
+            this.names = names;
+            this.classBytes = classBytes;
+            this.classSource = classSource;
+            this.usages = usages;
+        }
+
+        /**
+         * @return Fully qualified names of the selected classes.
+         */
+        Collection<String> getNames() {
+            return names;
+        }
+
+        @Nullable
+        byte[] read(String fqn) throws IOException {
+            return classBytes.read(fqn);
+        }
+    }
+
+    @FunctionalInterface
+    interface TopLevelConsumer {
+        /**
+         * @param printer A printer that visited one top-level class and its nested classes.
+         */
+        void accept(PublicApiPrinter printer) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ClassBytes {
+        @Nullable
+        byte[] read(String fqn) throws IOException;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Generates stubs for many artifacts as a pipeline of stages connected by bounded queues: artifacts are downloaded,
+ * their class entries inflated, visited and finally written, each stage on its own threads. Visiting the first
+ * artifact overlaps with downloading the rest, and visiting overlaps with inflating. Output is written in the order
+ * the artifacts are given in, and is identical to generating and printing each artifact in turn: the stubs of an
+ * artifact are only written once all of them are visited, so an artifact that fails partway through is reported
+ * without any of its stubs.
+ */
+class StubPipeline {
+    private static final Download END_OF_DOWNLOADS = new Download(new Artifact("", null), null);
+    private static final Chunk END_OF_CHUNKS = new Chunk(null, new LinkedHashMap<>(), new LinkedHashMap<>(),
+            new CompletableFuture<>());
+    private static final Output END_OF_OUTPUT = new Output(new Artifact("", null), null, null);
+
+    private final ArtifactResolver artifactResolver;
+    private final StubGenerator stubGenerator;
+    private final int downloadThreads;
+    private final int threads;
+
+    /**
+     * @param downloadThreads Number of artifacts to download concurrently, which is also how far downloads may
+     *                        run ahead of the artifact being visited.
+     * @param threads         Number of threads to visit classes on.
+     */
+    StubPipeline(ArtifactResolver artifactResolver, StubGenerator stubGenerator, int downloadThreads, int threads) {
+        this.artifactResolver = artifactResolver;
+        this.stubGenerator = stubGenerator;
+        this.downloadThreads = Math.max(1, downloadThreads);
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Returns once every artifact has been written or has failed. A failure of one artifact doesn't stop the others.
+     */
+    void run(List<Artifact> artifacts, Writer out, FailureHandler onFailure) throws IOException {
+        BlockingQueue<Download> downloads = new ArrayBlockingQueue<>(downloadThreads);
+        BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(threads * 2);
+        BlockingQueue<Output> outputs = new ArrayBlockingQueue<>(threads * 2);
+
+        ExecutorService downloadExecutor = Executors.newFixedThreadPool(downloadThreads);
+        ExecutorService stageExecutor = Executors.newFixedThreadPool(threads + 2);
+        try {
+            stageExecutor.submit(() -> download(artifacts, downloadExecutor, downloads));
+            stageExecutor.submit(() -> inflate(downloads, chunks, outputs));
+            for (int i = 0; i < threads; i++) {
+                stageExecutor.submit(() -> visit(chunks));
+            }
+            write(outputs, out, onFailure);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating stubs.", e);
+        } finally {
+            stageExecutor.shutdownNow();
+            downloadExecutor.shutdownNow();
+        }
+    }
+
+    private Void download(List<Artifact> artifacts, ExecutorService downloadExecutor,
+                          BlockingQueue<Download> downloads) throws InterruptedException {
+        try {
+            Throwable failure = null;
+            for (Artifact artifact : artifacts) {
+                Future<Path> jar;
+                if (failure == null) {
+                    try {
+                        jar = downloadExecutor.submit(() -> artifactResolver.resolveArtifact(artifact.dependency));
+                    } catch (Throwable t) {
+                        failure = t;
+                        jar = failed(t);
+                    }
+                } else {
+                    // every artifact is still reported, as failed, once this stage can't go on
+                    jar = failed(failure);
+                }
+                downloads.put(new Download(artifact, jar));
+            }
+        } finally {
+            downloads.put(END_OF_DOWNLOADS);
+        }
+        return null;
+    }
+
+    private static Future<Path> failed(Throwable failure) {
+        CompletableFuture<Path> jar = new CompletableFuture<>();
+        jar.completeExceptionally(failure);
+        return jar;
+    }
+
+    private Void inflate(BlockingQueue<Download> downloads, BlockingQueue<Chunk> chunks,
+                         BlockingQueue<Output> outputs) throws InterruptedException {
+        try {
+            inflateAll(downloads, chunks, outputs);
+        } finally {
+            for (int i = 0; i < threads; i++) {
+                chunks.put(END_OF_CHUNKS);
+            }
+            outputs.put(END_OF_OUTPUT);
+        }
+        return null;
+    }
+
+    private void inflateAll(BlockingQueue<Download> downloads, BlockingQueue<Chunk> chunks,
+                            BlockingQueue<Output> outputs) throws InterruptedException {
+        for (Download download = downloads.take(); download != END_OF_DOWNLOADS; download = downloads.take()) {
+            Artifact artifact = download.artifact;
+            try {
+                //noinspection ConstantConditions
+                Path jar = download.jar.get();
+                Profile profile = stubGenerator.getProfile();
+                try (JarIndex jarIndex = profile.time(Profile.Phase.INDEX, () -> JarIndex.open(jar))) {
+                    StubGenerator.Selection selection = stubGenerator.select(jarIndex, artifact.types, true);
+                    for (List<String> topLevelGroup : StubGenerator.topLevelGroups(selection.getNames())) {
+                        Map<String, byte[]> classes = new LinkedHashMap<>();
+                        Map<String, CharSequence> rendered = new LinkedHashMap<>();
+                        for (String fqn : topLevelGroup) {
+                            CharSequence stub = stubGenerator.rendered(selection, fqn);
+                            if (stub != null) {
+                                rendered.put(fqn, stub);
+                                continue;
+                            }
+                            byte[] classBytes = selection.read(fqn);
+                            if (classBytes != null) {
+                                classes.put(fqn, classBytes);
+                            }
+                        }
+
+                        // queued for writing first, so that the writer waits on chunks in artifact order
+                        CompletableFuture<PublicApiPrinter> printer = new CompletableFuture<>();
+                        outputs.put(new Output(artifact, printer, null));
+                        chunks.put(new Chunk(selection, classes, rendered, printer));
+                    }
+                }
+            } catch (ExecutionException e) {
+                outputs.put(new Output(artifact, null, e.getCause()));
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Throwable t) {
+                // including errors like running out of memory on one large class, which the writer still reports
+                outputs.put(new Output(artifact, null, t));
+            }
+        }
+    }
+
+    private Void visit(BlockingQueue<Chunk> chunks) throws InterruptedException {
+        for (Chunk chunk = chunks.take(); chunk != END_OF_CHUNKS; chunk = chunks.take()) {
+            try {
+                //noinspection ConstantConditions
+                chunk.printer.complete(stubGenerator.visit(chunk.selection, chunk.classes, chunk.rendered));
+            } catch (Throwable t) {
+                chunk.printer.completeExceptionally(t);
+            }
+        }
+        return null;
+    }
+
+    private void write(BlockingQueue<Output> outputs, Writer out, FailureHandler onFailure)
+            throws IOException, InterruptedException {
+        List<Output> artifactOutputs = new ArrayList<>();
+        for (Output output = outputs.take(); output != END_OF_OUTPUT; output = outputs.take()) {
+            if (!artifactOutputs.isEmpty() && artifactOutputs.get(0).artifact != output.artifact) {
+                write(artifactOutputs, out, onFailure);
+                artifactOutputs.clear();
+            }
+            artifactOutputs.add(output);
+        }
+        if (!artifactOutputs.isEmpty()) {
+            write(artifactOutputs, out, onFailure);
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the stubs of one artifact once all of them are visited, or only its failure if any part failed.
+     */
+    private void write(List<Output> artifactOutputs, Writer out, FailureHandler onFailure)
+            throws IOException, InterruptedException {
+        List<PublicApiPrinter> printers = new ArrayList<>(artifactOutputs.size());
+        for (Output output : artifactOutputs) {
+            Throwable failure = output.failure;
+            if (output.printer != null) {
+                try {
+                    printers.add(output.printer.get());
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                }
+            }
+            if (failure != null) {
+                onFailure.failed(output.artifact, failure, out);
+                return;
+            }
+        }
+        for (PublicApiPrinter printer : printers) {
+            stubGenerator.print(printer, out);
+        }
+    }
+
+    static class Artifact {
+        private final String dependency;
+
+        @Nullable
+        private final List<String> types;
+
+        /**
+         * @param dependency group:artifact:version coordinates.
+         * @param types      Fully qualified names or {@link TypeSelector} patterns of the classes to visit, or null
+         *                   to visit every class.
+         */
+        Artifact(String dependency, @Nullable List<String> types) {
+            this.dependency = dependency;
+            this.types = types;
+        }
+
+        String getDependency() {
+            return dependency;
+        }
+    }
+
+    @FunctionalInterface
+    interface FailureHandler {
+        /**
+         * Called on the writing thread, in artifact order, so a message written to {@code out} appears where
+         * the artifact's stubs would have been.
+         */
+        void failed(Artifact artifact, Throwable cause, Writer out) throws IOException;
+    }
+
+    private static class Download {
+        private final Artifact artifact;
+
+        @Nullable
+        private final Future<Path> jar;
+
+        private Download(Artifact artifact, @Nullable Future<Path> jar) {
+            this.artifact = artifact;
+            this.jar = jar;
+        }
+    }
+
+    private static class Chunk {
+        @Nullable
+        private final StubGenerator.Selection selection;
+
+        private final Map<String, byte[]> classes;
+        private final Map<String, CharSequence> rendered;
+        private final CompletableFuture<PublicApiPrinter> printer;
+
+        private Chunk(@Nullable StubGenerator.Selection selection, Map<String, byte[]> classes,
+                      Map<String, CharSequence> rendered, CompletableFuture<PublicApiPrinter> printer) {
+            this.selection = selection;
+            this.classes = classes;
+            this.rendered = rendered;
+            this.printer = printer;
+        }
+    }
+
+    private static class Output {
+        private final Artifact artifact;
+
+        @Nullable
+        private final CompletableFuture<PublicApiPrinter> printer;
+
+        @Nullable
+        private final Throwable failure;
+
+        private Output(Artifact artifact, @Nullable CompletableFuture<PublicApiPrinter> printer, @Nullable Throwable failure) {
+            this.artifact = artifact;
+            this.printer = printer;
+            this.failure = failure;
+        }
+    }
+}
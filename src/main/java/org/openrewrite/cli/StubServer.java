@@ -0,0 +1,233 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openrewrite.internal.lang.Nullable;
+import picocli.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Answers stub requests read as JSON lines, keeping resolved artifacts and jar indexes warm between requests.
+ * <p>
+ * A request looks like {@code {"id": "1", "dependency": "g:a:v", "types": ["a.B"], "closure": false}}, where
+ * only "dependency" is required. Each request is answered with one line, in completion order rather than request
+ * order, like {@code {"id": "1", "exitCode": 0, "stubs": "..."}} or {@code {"id": "1", "exitCode": 2, "error": "..."}}.
+ * Requests are read only as fast as they are answered, and serving stops once an answer can't be written.
+ */
+class StubServer {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ArtifactResolver artifactResolver;
+
+    @Nullable
+    private final StubCache stubCache;
+
+    private final Profile profile;
+
+    private final LruCache<String, Path> artifactsByDependency;
+
+    /**
+     * Evicted indexes are closed once no request is reading from them.
+     */
+    private final LruCache<Path, OpenJar> jarIndexes;
+
+    StubServer(ArtifactResolver artifactResolver, @Nullable StubCache stubCache, Profile profile, int maxCachedArtifacts) {
+        this.artifactResolver = artifactResolver;
+        this.stubCache = stubCache;
+        this.profile = profile;
+        this.artifactsByDependency = new LruCache<>(maxCachedArtifacts);
+        this.jarIndexes = new LruCache<>(maxCachedArtifacts, OpenJar::evict);
+    }
+
+    /**
+     * Reads requests until the input is exhausted and returns once every request has been answered.
+     *
+     * @throws IOException If an answer couldn't be written, after which no more requests are read or answered.
+     */
+    void serve(BufferedReader in, Writer out, int threads) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // requests that no thread is free for yet wait in the input rather than in the executor's queue
+        Semaphore inFlight = new Semaphore(threads * 2);
+        AtomicReference<IOException> writeFailure = new AtomicReference<>();
+        try {
+            String line;
+            while (writeFailure.get() == null && (line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    inFlight.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                String request = line;
+                executor.submit(() -> {
+                    try {
+                        if (writeFailure.get() != null) {
+                            return;
+                        }
+                        String response = handle(request);
+                        synchronized (out) {
+                            if (writeFailure.get() == null) {
+                                out.write(response);
+                                out.write('\n');
+                                out.flush();
+                            }
+                        }
+                    } catch (IOException e) {
+                        writeFailure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        IOException failure = writeFailure.get();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    String handle(String request) {
+        ObjectNode response = mapper.createObjectNode();
+        try {
+            JsonNode json = mapper.readTree(request);
+            response.put("id", json.path("id").asText(""));
+
+            String dependency = json.path("dependency").asText(null);
+            if (dependency == null) {
+                return error(response, CommandLine.ExitCode.USAGE, "Request must include a dependency");
+            }
+
+            List<String> types = null;
+            if (json.path("types").isArray()) {
+                types = new ArrayList<>();
+                for (JsonNode type : json.path("types")) {
+                    types.add(type.asText());
+                }
+            }
+
+            Path artifact = artifactsByDependency.get(dependency, artifactResolver::resolveArtifact);
+            OpenJar openJar = acquire(artifact);
+            StringWriter stubs = new StringWriter();
+            try {
+                StubGenerator stubGenerator = new StubGenerator(1, json.path("closure").asBoolean(false), stubCache,
+                        null, SymbolTable.shared(), true, profile);
+                stubGenerator.print(stubGenerator.generate(openJar.jarIndex, types), stubs);
+            } finally {
+                openJar.release();
+            }
+
+            response.put("exitCode", CommandLine.ExitCode.OK);
+            response.put("stubs", stubs.toString());
+            return mapper.writeValueAsString(response);
+        } catch (IllegalArgumentException e) {
+            return error(response, CommandLine.ExitCode.USAGE, e.getMessage());
+        } catch (Exception e) {
+            return error(response, CommandLine.ExitCode.SOFTWARE, e.toString());
+        }
+    }
+
+    private OpenJar acquire(Path artifact) throws IOException {
+        while (true) {
+            OpenJar openJar = jarIndexes.get(artifact,
+                    jar -> new OpenJar(profile.time(Profile.Phase.INDEX, () -> JarIndex.open(jar))));
+            // an index evicted and closed between the lookup and here is opened again
+            if (openJar.acquire()) {
+                return openJar;
+            }
+        }
+    }
+
+    private String error(ObjectNode response, int exitCode, String message) {
+        response.put("exitCode", exitCode);
+        response.put("error", message);
+        try {
+            return mapper.writeValueAsString(response);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A cached index along with the number of requests reading from it.
+     */
+    private static class OpenJar {
+        private final JarIndex jarIndex;
+        private int readers;
+        private boolean evicted;
+
+        private OpenJar(JarIndex jarIndex) {
+            this.jarIndex = jarIndex;
+        }
+
+        /**
+         * @return Whether the index is open and now held open until {@link #release()}.
+         */
+        private synchronized boolean acquire() {
+            if (evicted) {
+                return false;
+            }
+            readers++;
+            return true;
+        }
+
+        private synchronized void release() {
+            if (--readers == 0 && evicted) {
+                close();
+            }
+        }
+
+        private synchronized void evict() {
+            evicted = true;
+            if (readers == 0) {
+                close();
+            }
+        }
+
+        private void close() {
+            try {
+                jarIndex.close();
+            } catch (IOException ignored) {
+                // nothing reads from the index anymore, so failing to close it changes no answer
+            }
+        }
+    }
+}
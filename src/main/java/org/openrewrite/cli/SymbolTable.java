@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Rendered type names, shared by every generator in the process, so that the types that many artifacts reference,
+ * like those of java.*, are rendered once and held once rather than once per artifact or request. Rendered stubs
+ * are held too, for the generators that are asked for the same artifacts again.
+ * Every part is bounded and split into stripes by key, each with its own lock, so that threads rendering different
+ * types rarely wait on each other.
+ */
+class SymbolTable {
+    private static final int STRIPES = 16;
+
+    private static final SymbolTable SHARED = new SymbolTable(4_096, 2_048, 65_536, 20_000);
+
+    private final int maxSymbolsPerPackage;
+    private final Striped<PackageSymbols> packages;
+    private final Striped<String> names;
+    private final Striped<CharSequence> stubs;
+
+    /**
+     * @param maxPackages          Number of packages to keep rendered type names for.
+     * @param maxSymbolsPerPackage Number of rendered names to keep per package for each kind of name, like
+     *                             descriptors or signatures. Names past that are rendered again on every lookup.
+     * @param maxNames             Number of distinct rendered names to intern.
+     * @param maxStubs             Number of rendered classes to keep.
+     */
+    SymbolTable(int maxPackages, int maxSymbolsPerPackage, int maxNames, int maxStubs) {
+        this.maxSymbolsPerPackage = maxSymbolsPerPackage;
+        this.packages = new Striped<>(maxPackages);
+        this.names = new Striped<>(maxNames);
+        this.stubs = new Striped<>(maxStubs);
+    }
+
+    static SymbolTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * Type names as they are rendered in one package, which don't depend on the artifact they are rendered for.
+     */
+    PackageSymbols forPackage(String packageName) {
+        PackageSymbols symbols = packages.get(packageName);
+        if (symbols == null) {
+            symbols = new PackageSymbols(maxSymbolsPerPackage);
+            PackageSymbols raced = packages.putIfAbsent(packageName, symbols);
+            if (raced != null) {
+                symbols = raced;
+            }
+        }
+        return symbols;
+    }
+
+    /**
+     * @return An equal string that other rendered names share, so that a name rendered for many packages, like
+     * {@code java.lang.String}, is held once.
+     */
+    String intern(String name) {
+        String interned = names.putIfAbsent(name, name);
+        return interned == null ? name : interned;
+    }
+
+    /**
+     * @param artifactHash See {@link ClassSource#getArtifactHash(String)}.
+     * @param name         Internal name of the class.
+     * @return The class as rendered by {@link PublicApiPrinter#getContents(String)}, or null if it wasn't rendered
+     * from this artifact before or has since been evicted.
+     */
+    @Nullable
+    CharSequence getStub(String artifactHash, String name) {
+        return stubs.get(artifactHash + ':' + name);
+    }
+
+    void putStub(String artifactHash, String name, CharSequence contents) {
+        stubs.putIfAbsent(artifactHash + ':' + name, contents);
+    }
+
+    static class PackageSymbols {
+        private final int maxSymbols;
+
+        final Map<String, String> byDescriptor = new ConcurrentHashMap<>();
+        final Map<String, String> bySignature = new ConcurrentHashMap<>();
+        final Map<String, String> byInternalName = new ConcurrentHashMap<>();
+        final Map<String, String[]> byMethodDescriptor = new ConcurrentHashMap<>();
+
+        private PackageSymbols(int maxSymbols) {
+            this.maxSymbols = maxSymbols;
+        }
+
+        /**
+         * @param symbols One of the maps of this package.
+         * @return The symbol held for the key, rendering and holding it if there's room.
+         */
+        <V> V computeIfAbsent(Map<String, V> symbols, String key, Function<String, V> render) {
+            if (symbols.size() >= maxSymbols) {
+                V symbol = symbols.get(key);
+                return symbol == null ? render.apply(key) : symbol;
+            }
+            return symbols.computeIfAbsent(key, render);
+        }
+    }
+
+    private static class Striped<V> {
+        private final LruCache<String, V>[] stripes;
+
+        @SuppressWarnings("unchecked")
+        private Striped(int maximumSize) {
+            stripes = new LruCache[STRIPES];
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new LruCache<>(Math.max(1, maximumSize / STRIPES));
+            }
+        }
+
+        @Nullable
+        private V get(String key) {
+            return stripe(key).get(key);
+        }
+
+        /**
+         * @return The value already held for the key, or null if the given value is now held.
+         */
+        @Nullable
+        private V putIfAbsent(String key, V value) {
+            return stripe(key).putIfAbsent(key, value);
+        }
+
+        private LruCache<String, V> stripe(String key) {
+            int h = key.hashCode();
+            return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+        }
+    }
+}
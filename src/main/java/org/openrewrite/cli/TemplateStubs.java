@@ -0,0 +1,284 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Generates stubs in the calling process, for build tools and recipes that would otherwise run the command line
+ * in a process of its own for every artifact. Never writes to stdout or exits; failures are thrown.
+ * <p>
+ * Instances are immutable and safe to share between threads. Rendered type names are shared by every instance in
+ * the process. Stubs are only kept between calls in a {@link #withStubCacheDir(Path) stub cache directory}.
+ * <pre>{@code
+ * Map<String, CharSequence> stubs = new TemplateStubs()
+ *         .withClosure(true)
+ *         .fromDependency("org.assertj:assertj-core:3.19.0", singletonList("org.assertj.core.api.*"));
+ * }</pre>
+ */
+public class TemplateStubs {
+    private final int threads;
+    private final boolean closure;
+
+    @Nullable
+    private final Usages usages;
+
+    @Nullable
+    private final StubCache stubCache;
+
+    @Nullable
+    private final String cacheDir;
+
+    @Nullable
+    private final Profile profile;
+
+    private final SymbolTable symbolTable;
+    private final boolean reuseStubs;
+
+    @Nullable
+    private volatile ArtifactResolver artifactResolver;
+
+    public TemplateStubs() {
+        this(1, false, null, null, null, null, SymbolTable.shared(), false);
+    }
+
+    private TemplateStubs(int threads, boolean closure, @Nullable Usages usages, @Nullable StubCache stubCache,
+                          @Nullable String cacheDir, @Nullable Profile profile, SymbolTable symbolTable,
+                          boolean reuseStubs) {
+        this.threads = threads;
+        this.closure = closure;
+        this.usages = usages;
+        this.stubCache = stubCache;
+        this.cacheDir = cacheDir;
+        this.profile = profile;
+        this.symbolTable = symbolTable;
+        this.reuseStubs = reuseStubs;
+    }
+
+    /**
+     * @param threads Number of threads each call visits classes on. Output is the same regardless of thread count.
+     */
+    public TemplateStubs withThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be at least 1, not " + threads);
+        }
+        return new TemplateStubs(threads, closure, usages, stubCache, cacheDir, profile, symbolTable, reuseStubs);
+    }
+
+    /**
+     * @param closure Whether to also generate stubs for the types in the same artifact that the selected types
+     *                extend, implement or reference in their public signatures.
+     */
+    public TemplateStubs withClosure(boolean closure) {
+        return new TemplateStubs(threads, closure, usages, stubCache, cacheDir, profile, symbolTable, reuseStubs);
+    }
+
+    /**
+     * @param usages The names used by templates, to generate only the types and members they use along with the
+     *               types those members need, or null to generate the selected types in full.
+     */
+    public TemplateStubs withUsages(@Nullable Usages usages) {
+        return new TemplateStubs(threads, closure, usages == null ? null : usages.copy(), stubCache, cacheDir,
+                profile, symbolTable, reuseStubs);
+    }
+
+    /**
+     * @param stubCacheDir A directory to keep the stub of every visited class in, keyed by the class file's
+     *                     content, or null to keep stubs in memory only.
+     */
+    public TemplateStubs withStubCacheDir(@Nullable Path stubCacheDir) {
+        return new TemplateStubs(threads, closure, usages, stubCacheDir == null ? null : new StubCache(stubCacheDir),
+                cacheDir, profile, symbolTable, reuseStubs);
+    }
+
+    /**
+     * @param cacheDir The directory to download Maven artifacts to, or null for ~/.rewrite-cache/artifacts.
+     */
+    public TemplateStubs withCacheDir(@Nullable String cacheDir) {
+        return new TemplateStubs(threads, closure, usages, stubCache, cacheDir, profile, symbolTable, reuseStubs);
+    }
+
+    /**
+     * Records every call in a profile that outlives the calls, like the one the command line prints.
+     */
+    TemplateStubs withProfile(Profile profile) {
+        return new TemplateStubs(threads, closure, usages, stubCache, cacheDir, profile, symbolTable, reuseStubs);
+    }
+
+    /**
+     * Holds rendered names and stubs in a symbol table of the caller's, so that calls that generate stubs for the
+     * same artifact again take the stubs from there instead of visiting its classes.
+     */
+    TemplateStubs withSymbolTable(SymbolTable symbolTable) {
+        return new TemplateStubs(threads, closure, usages, stubCache, cacheDir, profile, symbolTable, true);
+    }
+
+    /**
+     * @param classes A jar, or a directory of class files laid out by package.
+     * @param types   Fully qualified names or patterns like {@code org.assertj..*Assert} of the types to generate
+     *                stubs for, or null for every type.
+     * @return The stub of each selected top-level type along with its nested types, by fully qualified name, in
+     * name order.
+     */
+    public Map<String, CharSequence> fromClasses(Path classes, @Nullable Collection<String> types) throws IOException {
+        Profile profile = profile();
+        try (ClassSource classSource = open(classes, profile)) {
+            return generate(classSource, types, profile);
+        } finally {
+            commit(profile);
+        }
+    }
+
+    /**
+     * Like {@link #fromClasses(Path, Collection)}, except that each top-level type is handed to the sink as soon
+     * as it is generated and is then released, so memory use doesn't grow with the size of the artifact.
+     */
+    public void fromClasses(Path classes, @Nullable Collection<String> types, Sink sink) throws IOException {
+        Profile profile = profile();
+        try (ClassSource classSource = open(classes, profile)) {
+            generate(classSource, types, sink, profile);
+        } finally {
+            commit(profile);
+        }
+    }
+
+    /**
+     * @param dependency group:artifact:version coordinates of a dependency in Maven Central.
+     * @throws IllegalArgumentException if the dependency can't be resolved or downloaded.
+     * @see #fromClasses(Path, Collection)
+     */
+    public Map<String, CharSequence> fromDependency(String dependency, @Nullable Collection<String> types) throws IOException {
+        return fromClasses(artifactResolver().resolveArtifact(dependency), types);
+    }
+
+    /**
+     * @see #fromClasses(Path, Collection, Sink)
+     */
+    public void fromDependency(String dependency, @Nullable Collection<String> types, Sink sink) throws IOException {
+        fromClasses(artifactResolver().resolveArtifact(dependency), types, sink);
+    }
+
+    /**
+     * @param classSource Classes that the caller opened and closes, like a {@link JarIndex} that it reuses.
+     * @see #fromClasses(Path, Collection)
+     */
+    public Map<String, CharSequence> generate(ClassSource classSource, @Nullable Collection<String> types) throws IOException {
+        Profile profile = profile();
+        try {
+            return generate(classSource, types, profile);
+        } finally {
+            commit(profile);
+        }
+    }
+
+    /**
+     * @see #fromClasses(Path, Collection, Sink)
+     */
+    public void generate(ClassSource classSource, @Nullable Collection<String> types, Sink sink) throws IOException {
+        Profile profile = profile();
+        try {
+            generate(classSource, types, sink, profile);
+        } finally {
+            commit(profile);
+        }
+    }
+
+    private Map<String, CharSequence> generate(ClassSource classSource, @Nullable Collection<String> types,
+                                               Profile profile) throws IOException {
+        Map<String, CharSequence> sources = new LinkedHashMap<>(sources(stubGenerator(profile), classSource, types));
+        for (CharSequence source : sources.values()) {
+            profile.emitted(source);
+        }
+        return sources;
+    }
+
+    private void generate(ClassSource classSource, @Nullable Collection<String> types, Sink sink,
+                          Profile profile) throws IOException {
+        stubGenerator(profile).stream(classSource, types, printer -> {
+            for (Map.Entry<String, String> source : printer.toSources().entrySet()) {
+                profile.emitted(source.getValue());
+                sink.accept(source.getKey(), source.getValue());
+            }
+        });
+    }
+
+    /**
+     * @return Stub sources by fully qualified name of their top-level class, in name order.
+     */
+    static Map<String, String> sources(StubGenerator stubGenerator, ClassSource classSource,
+                                       @Nullable Collection<String> types) throws IOException {
+        PublicApiPrinter printer = stubGenerator.generate(classSource, types);
+        try (Profile.Timer ignored = stubGenerator.getProfile().start(Profile.Phase.PRINT)) {
+            return printer.toSources();
+        }
+    }
+
+    /**
+     * A generator configured like this instance, for outputs other than stub sources, like type tables.
+     */
+    StubGenerator stubGenerator(Profile profile) {
+        return usages == null ?
+                new StubGenerator(threads, closure, stubCache, null, symbolTable, reuseStubs, profile) :
+                new StubGenerator(threads, true, null, usages, symbolTable, reuseStubs, profile);
+    }
+
+    static ClassSource open(Path classes, Profile profile) throws IOException {
+        return profile.time(Profile.Phase.INDEX, () -> Files.isDirectory(classes) ?
+                ClassDirectory.open(classes) :
+                JarIndex.open(classes));
+    }
+
+    private ArtifactResolver artifactResolver() {
+        ArtifactResolver resolver = artifactResolver;
+        if (resolver == null) {
+            synchronized (this) {
+                resolver = artifactResolver;
+                if (resolver == null) {
+                    resolver = ArtifactResolver.create(cacheDir, profile());
+                    artifactResolver = resolver;
+                }
+            }
+        }
+        return resolver;
+    }
+
+    private Profile profile() {
+        return profile == null ? new Profile() : profile;
+    }
+
+    private void commit(Profile profile) {
+        // a shared profile is committed by whoever shares it
+        if (this.profile == null) {
+            profile.commit();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * @param fqn    Fully qualified name of a top-level type.
+         * @param source Its stub, along with the stubs of its nested types.
+         */
+        void accept(String fqn, CharSequence source) throws IOException;
+    }
+}
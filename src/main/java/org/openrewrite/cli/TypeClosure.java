@@ -0,0 +1,241 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.objectweb.asm.*;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Expands a set of types to the supertypes, outer classes and signature-referenced types they need to
+ * compile, stopping at the boundary of the class source. Each class is read once; the class file bytes are
+ * kept so that the classes can be visited without being read again.
+ * <p>
+ * When members are pruned by {@link Usages}, the names of the abstract methods of every public supertype, including
+ * those of the platform like {@code java.util.List}, are used too, since the kept classes that implement them
+ * can't compile without their implementations. Using a name can make members of classes already resolved reference
+ * more types, so the classes are collected again until no more names are used.
+ */
+class TypeClosure {
+    private final ClassSource classSource;
+
+    @Nullable
+    private final Usages usages;
+
+    /**
+     * @param usages The names used by templates, so that only the types referenced by used members are followed,
+     *               or null to follow every public member. The names this closure uses are added to a copy, so the
+     *               given usages are left as they are for other resolutions.
+     */
+    TypeClosure(ClassSource classSource, @Nullable Usages usages) {
+        this.classSource = classSource;
+        this.usages = usages == null ? null : usages.copy();
+    }
+
+    /**
+     * @return The names used by templates along with the names that resolving the closure used, which the
+     * printed members of the resolved classes have to be chosen by.
+     */
+    @Nullable
+    Usages getUsages() {
+        return usages;
+    }
+
+    /**
+     * @return Class file bytes of the seed types and every type they reference in the class source, keyed by
+     * fully qualified name.
+     */
+    Map<String, byte[]> resolve(Collection<String> seeds) throws IOException {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        Set<String> seen = new HashSet<>(seeds);
+        Deque<String> worklist = new ArrayDeque<>(seeds);
+
+        ReferenceCollector referenceCollector = new ReferenceCollector(usages);
+        Set<String> platformSupertypes = new HashSet<>();
+        do {
+            referenceCollector.usedMoreNames = false;
+            while (!worklist.isEmpty()) {
+                String fqn = worklist.poll();
+                byte[] classBytes = classes.get(fqn);
+                if (classBytes == null) {
+                    classBytes = classSource.read(fqn);
+                    if (classBytes == null) {
+                        continue;
+                    }
+                    classes.put(fqn, classBytes);
+                }
+
+                referenceCollector.references.clear();
+                referenceCollector.supertypes.clear();
+                new ClassReader(classBytes).accept(referenceCollector, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                for (String reference : referenceCollector.references) {
+                    String referenceFqn = reference.replace('/', '.');
+                    if (classSource.contains(referenceFqn) && seen.add(referenceFqn)) {
+                        worklist.add(referenceFqn);
+                    }
+                }
+                if (usages != null) {
+                    for (String supertype : new ArrayList<>(referenceCollector.supertypes)) {
+                        if (!classSource.contains(supertype.replace('/', '.'))) {
+                            usePlatformAbstractMethods(supertype, platformSupertypes, referenceCollector);
+                        }
+                    }
+                }
+            }
+            if (referenceCollector.usedMoreNames) {
+                worklist.addAll(classes.keySet());
+            }
+        } while (!worklist.isEmpty());
+        return classes;
+    }
+
+    private static void usePlatformAbstractMethods(String internalName, Set<String> seen,
+                                                   ReferenceCollector referenceCollector) throws IOException {
+        if (!seen.add(internalName)) {
+            return;
+        }
+        try (InputStream classFile = ClassLoader.getSystemResourceAsStream(internalName + ".class")) {
+            if (classFile == null) {
+                return;
+            }
+            referenceCollector.supertypes.clear();
+            new ClassReader(classFile).accept(referenceCollector, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        }
+        // the platform class's references are never followed, only its supertypes
+        for (String supertype : new ArrayList<>(referenceCollector.supertypes)) {
+            usePlatformAbstractMethods(supertype, seen, referenceCollector);
+        }
+    }
+
+    /**
+     * Collects the internal names of the types that {@link PublicApiPrinter} would print for a class.
+     */
+    private static class ReferenceCollector extends ClassVisitor {
+        private final Set<String> references = new HashSet<>();
+        private final List<String> supertypes = new ArrayList<>();
+        private final SignatureVisitor signatureCollector = new SignatureCollector(references);
+        private boolean usedMoreNames;
+
+        @Nullable
+        private final Usages usages;
+
+        private String name;
+        private boolean publicClass;
+
+        ReferenceCollector(@Nullable Usages usages) {
+            super(Opcodes.ASM9);
+            this.usages = usages;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.name = name;
+            publicClass = (access & Opcodes.ACC_PUBLIC) != 0;
+            if (name.indexOf('$') != -1) {
+                references.add(name.substring(0, name.lastIndexOf('$')));
+            }
+            if (superName != null) {
+                references.add(superName);
+                supertypes.add(superName);
+            }
+            if (interfaces != null) {
+                references.addAll(Arrays.asList(interfaces));
+                supertypes.addAll(Arrays.asList(interfaces));
+            }
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            if (isPrinted(access, name)) {
+                addType(Type.getType(descriptor));
+                addSignature(signature);
+            }
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            if (usages != null && publicClass && (access & Opcodes.ACC_ABSTRACT) != 0) {
+                usedMoreNames |= usages.use(name);
+            }
+            if (isPrinted(access, name)) {
+                Type methodType = Type.getMethodType(descriptor);
+                addType(methodType.getReturnType());
+                for (Type argumentType : methodType.getArgumentTypes()) {
+                    addType(argumentType);
+                }
+                if (exceptions != null) {
+                    references.addAll(Arrays.asList(exceptions));
+                }
+                addSignature(signature);
+            }
+            return null;
+        }
+
+        private boolean isPrinted(int access, String memberName) {
+            return publicClass && (access & Opcodes.ACC_PUBLIC) != 0 &&
+                   (usages == null || usages.isMemberUsed(name, access, memberName));
+        }
+
+        private void addType(Type type) {
+            if (type.getSort() == Type.ARRAY) {
+                type = type.getElementType();
+            }
+            if (type.getSort() == Type.OBJECT) {
+                references.add(type.getInternalName());
+            }
+        }
+
+        private void addSignature(@Nullable String signature) {
+            if (signature != null) {
+                new SignatureReader(signature).accept(signatureCollector);
+            }
+        }
+    }
+
+    private static class SignatureCollector extends SignatureVisitor {
+        private final Set<String> references;
+        private final Deque<String> classTypes = new ArrayDeque<>();
+
+        SignatureCollector(Set<String> references) {
+            super(Opcodes.ASM9);
+            this.references = references;
+        }
+
+        @Override
+        public void visitClassType(String name) {
+            classTypes.push(name);
+            references.add(name);
+        }
+
+        @Override
+        public void visitInnerClassType(String name) {
+            String innerClassType = classTypes.pop() + '$' + name;
+            classTypes.push(innerClassType);
+            references.add(innerClassType);
+        }
+
+        @Override
+        public void visitEnd() {
+            classTypes.pop();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.util.TraceSignatureVisitor;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memoizes how {@link PublicApiPrinter} renders types in source, per package that the type is
+ * referenced from. Safe to share between printers on different threads. Rendered names are held in a
+ * {@link SymbolTable} that caches with other instances share, and only hit and miss counts are kept per instance.
+ */
+public class TypeNameCache {
+    private static final String LEADING_EXTENDS = " extends ";
+
+    private final Map<String, PackageTypeNames> typeNamesByPackage = new ConcurrentHashMap<>();
+
+    private final SymbolTable symbolTable;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private final Profile profile;
+
+    public TypeNameCache() {
+        this(new Profile());
+    }
+
+    /**
+     * @param profile Where the time spent rendering types on cache misses is recorded.
+     */
+    TypeNameCache(Profile profile) {
+        this(SymbolTable.shared(), profile);
+    }
+
+    TypeNameCache(SymbolTable symbolTable, Profile profile) {
+        this.symbolTable = symbolTable;
+        this.profile = profile;
+    }
+
+    PackageTypeNames forPackage(String packageName) {
+        return typeNamesByPackage.computeIfAbsent(packageName,
+                p -> new PackageTypeNames(p, symbolTable.forPackage(p)));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return String.format(Locale.ROOT, "type name cache: %d lookups, %d hits (%.1f%%)",
+                lookups, hits, lookups == 0 ? 0.0 : 100.0 * hits / lookups);
+    }
+
+    /**
+     * Type names as they are rendered in one package.
+     */
+    final class PackageTypeNames {
+        private final String packageName;
+        private final SymbolTable.PackageSymbols symbols;
+
+        private final Map<String, String> byDescriptor;
+        private final Map<String, String> bySignature;
+        private final Map<String, String> byInternalName;
+        private final Map<String, String[]> byMethodDescriptor;
+
+        private PackageTypeNames(String packageName, SymbolTable.PackageSymbols symbols) {
+            this.packageName = packageName;
+            this.symbols = symbols;
+            this.byDescriptor = symbols.byDescriptor;
+            this.bySignature = symbols.bySignature;
+            this.byInternalName = symbols.byInternalName;
+            this.byMethodDescriptor = symbols.byMethodDescriptor;
+        }
+
+        String descriptor(String descriptor) {
+            String type = byDescriptor.get(descriptor);
+            if (type == null) {
+                misses.increment();
+                long start = System.nanoTime();
+                type = symbols.computeIfAbsent(byDescriptor, descriptor,
+                        d -> relativize(Type.getType(d).getClassName()));
+                profile.record(Profile.Phase.RENDER_TYPES, System.nanoTime() - start);
+            } else {
+                hits.increment();
+            }
+            return type;
+        }
+
+        String signature(String signature) {
+            String type = bySignature.get(signature);
+            if (type == null) {
+                misses.increment();
+                long start = System.nanoTime();
+                type = symbols.computeIfAbsent(bySignature, signature, s -> {
+                    // a field signature is read as a class signature whose superclass is the field's type
+                    TraceSignatureVisitor traceSignatureVisitor = new TraceSignatureVisitor(Opcodes.ACC_PUBLIC);
+                    new SignatureReader(s).accept(traceSignatureVisitor);
+                    String declaration = traceSignatureVisitor.getDeclaration();
+                    return relativize(declaration.startsWith(LEADING_EXTENDS) ?
+                            declaration.substring(LEADING_EXTENDS.length()) :
+                            declaration);
+                });
+                profile.record(Profile.Phase.RENDER_TYPES, System.nanoTime() - start);
+            } else {
+                hits.increment();
+            }
+            return type;
+        }
+
+        String internalName(String internalName) {
+            String type = byInternalName.get(internalName);
+            if (type == null) {
+                misses.increment();
+                long start = System.nanoTime();
+                type = symbols.computeIfAbsent(byInternalName, internalName,
+                        n -> relativize(Type.getObjectType(n).getClassName()));
+                profile.record(Profile.Phase.RENDER_TYPES, System.nanoTime() - start);
+            } else {
+                hits.increment();
+            }
+            return type;
+        }
+
+        /**
+         * @return The return type followed by the parameter types.
+         */
+        String[] methodDescriptor(String methodDescriptor) {
+            String[] types = byMethodDescriptor.get(methodDescriptor);
+            if (types == null) {
+                misses.increment();
+                types = symbols.computeIfAbsent(byMethodDescriptor, methodDescriptor, d -> {
+                    Type methodType = Type.getMethodType(d);
+                    Type[] argumentTypes = methodType.getArgumentTypes();
+                    String[] rendered = new String[argumentTypes.length + 1];
+                    rendered[0] = descriptor(methodType.getReturnType().getDescriptor());
+                    for (int i = 0; i < argumentTypes.length; i++) {
+                        rendered[i + 1] = descriptor(argumentTypes[i].getDescriptor());
+                    }
+                    return rendered;
+                });
+            } else {
+                hits.increment();
+            }
+            return types;
+        }
+
+        private String relativize(String type) {
+            type = type.replace("java.io.", "");
+            int lastDot = type.lastIndexOf('.');
+            if (lastDot == packageName.length() && type.startsWith(packageName)) {
+                type = type.substring(lastDot + 1);
+            }
+            return symbolTable.intern(type.replace('$', '.'));
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Selects classes by fully qualified name. A selector is one of:
+ * <ul>
+ *     <li>an exact name, like {@code org.assertj.core.api.Assert}</li>
+ *     <li>a pattern whose segments may use {@code *} and {@code ?}, like {@code org.assertj.core.api.*}</li>
+ *     <li>a pattern with {@code ..} for any number of packages, like {@code org.assertj..*Assert}</li>
+ *     <li>any of the above preceded by {@code !} to exclude the classes it matches</li>
+ * </ul>
+ * Nested classes are named with '$', so {@code *} matches them too. Selectors are compiled into one trie keyed by
+ * name segment, so matching a name costs the same no matter how many selectors share its package prefix.
+ */
+class TypeSelector {
+    private final Node root = new Node();
+
+    @Nullable
+    private final Set<String> exactNames;
+
+    private final boolean onlyExclusions;
+
+    private TypeSelector(Collection<String> selectors) {
+        Set<String> exact = new LinkedHashSet<>();
+        boolean patterns = false;
+        boolean inclusions = false;
+        for (String selector : selectors) {
+            boolean exclusion = selector.startsWith("!");
+            List<String> segments = segments(exclusion ? selector.substring(1) : selector, selector);
+
+            Node node = root;
+            for (String segment : segments) {
+                node = node.child(segment);
+            }
+            if (exclusion) {
+                node.excluded = true;
+                patterns = true;
+            } else {
+                node.included = true;
+                inclusions = true;
+                if (isLiteral(segments)) {
+                    exact.add(selector);
+                } else {
+                    patterns = true;
+                }
+            }
+        }
+        this.exactNames = patterns ? null : exact;
+        this.onlyExclusions = !inclusions;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a selector is malformed.
+     */
+    static TypeSelector compile(Collection<String> selectors) {
+        return new TypeSelector(selectors);
+    }
+
+    /**
+     * @return The selected names when every selector is an exact name, so that no class names need to be matched.
+     */
+    @Nullable
+    Set<String> getExactNames() {
+        return exactNames;
+    }
+
+    boolean matches(String fqn) {
+        List<Node> states = new ArrayList<>(4);
+        addWithAnyDepth(states, root);
+
+        List<Node> next = new ArrayList<>(4);
+        int start = 0;
+        while (!states.isEmpty()) {
+            int dot = fqn.indexOf('.', start);
+            String segment = dot == -1 ? fqn.substring(start) : fqn.substring(start, dot);
+
+            next.clear();
+            for (Node state : states) {
+                state.step(segment, next);
+            }
+            List<Node> swap = states;
+            states = next;
+            next = swap;
+
+            if (dot == -1) {
+                break;
+            }
+            start = dot + 1;
+        }
+
+        boolean included = false;
+        boolean excluded = false;
+        for (Node state : states) {
+            included |= state.included;
+            excluded |= state.excluded;
+        }
+        return (included || onlyExclusions) && !excluded;
+    }
+
+    /**
+     * @return The segments of a selector, where ".." is a segment of its own since no name segment contains a dot.
+     */
+    private static List<String> segments(String pattern, String selector) {
+        List<String> segments = new ArrayList<>();
+        int i = 0;
+        if (pattern.startsWith("..")) {
+            segments.add(Node.ANY_DEPTH);
+            i = 2;
+        }
+        while (true) {
+            int dot = pattern.indexOf('.', i);
+            if (dot == i || i == pattern.length()) {
+                throw new IllegalArgumentException("Invalid type selector " + selector);
+            }
+            if (dot == -1) {
+                segments.add(pattern.substring(i));
+                return segments;
+            }
+            segments.add(pattern.substring(i, dot));
+            if (pattern.startsWith("..", dot)) {
+                segments.add(Node.ANY_DEPTH);
+                i = dot + 2;
+            } else {
+                i = dot + 1;
+            }
+        }
+    }
+
+    private static boolean isLiteral(List<String> segments) {
+        for (String segment : segments) {
+            if (isPattern(segment)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPattern(String segment) {
+        return Node.ANY_DEPTH.equals(segment) || segment.indexOf('*') != -1 || segment.indexOf('?') != -1;
+    }
+
+    private static void addWithAnyDepth(List<Node> states, Node node) {
+        if (!states.contains(node)) {
+            states.add(node);
+        }
+        // ".." also matches no packages at all
+        if (node.anyDepth != null) {
+            addWithAnyDepth(states, node.anyDepth);
+        }
+    }
+
+    private static class Node {
+        private static final String ANY_DEPTH = "..";
+
+        private final Map<String, Node> literals = new HashMap<>();
+        private final Map<String, Glob> globs = new LinkedHashMap<>();
+
+        /**
+         * The node after a "..", which stays in place for any number of segments.
+         */
+        @Nullable
+        private Node anyDepth;
+
+        private boolean isAnyDepth;
+        private boolean included;
+        private boolean excluded;
+
+        private Node child(String segment) {
+            if (ANY_DEPTH.equals(segment)) {
+                if (anyDepth == null) {
+                    anyDepth = new Node();
+                    anyDepth.isAnyDepth = true;
+                }
+                return anyDepth;
+            } else if (isPattern(segment)) {
+                return globs.computeIfAbsent(segment, Glob::new).node;
+            }
+            return literals.computeIfAbsent(segment, s -> new Node());
+        }
+
+        private void step(String segment, List<Node> next) {
+            if (isAnyDepth) {
+                addWithAnyDepth(next, this);
+            }
+            Node literal = literals.get(segment);
+            if (literal != null) {
+                addWithAnyDepth(next, literal);
+            }
+            for (Glob glob : globs.values()) {
+                if (glob.pattern.matcher(segment).matches()) {
+                    addWithAnyDepth(next, glob.node);
+                }
+            }
+        }
+    }
+
+    private static class Glob {
+        private final Pattern pattern;
+        private final Node node = new Node();
+
+        private Glob(String glob) {
+            StringBuilder regex = new StringBuilder();
+            int literalStart = 0;
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c == '*' || c == '?') {
+                    if (i > literalStart) {
+                        regex.append(Pattern.quote(glob.substring(literalStart, i)));
+                    }
+                    regex.append(c == '*' ? ".*" : ".");
+                    literalStart = i + 1;
+                }
+            }
+            if (literalStart < glob.length()) {
+                regex.append(Pattern.quote(glob.substring(literalStart)));
+            }
+            this.pattern = Pattern.compile(regex.toString());
+        }
+    }
+}
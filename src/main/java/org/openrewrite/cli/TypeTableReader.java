@@ -0,0 +1,173 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Synthesizes class files from a type table written by {@link TypeTableWriter}. The class files have the
+ * signatures of the original classes and method bodies that only throw, which is all that type attribution needs,
+ * so a jar of them can go straight onto a parser's classpath, e.g.
+ * {@code JavaParser.fromJavaVersion().classpath(jar)}, without compiling any stubs.
+ */
+public class TypeTableReader {
+    static final int MAGIC = 0x52575454;
+    static final int VERSION = 1;
+
+    static final int END = 0;
+    static final int CLASS = 1;
+    static final int INNER_CLASS = 2;
+    static final int FIELD = 3;
+    static final int METHOD = 4;
+    static final int END_OF_CLASS = 5;
+
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<>();
+
+    private TypeTableReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+    /**
+     * @return Class files by internal name.
+     */
+    public static Map<String, byte[]> read(InputStream in) throws IOException {
+        return new TypeTableReader(new GZIPInputStream(in)).read();
+    }
+
+    /**
+     * Writes the class files of a type table to a jar that can be put on a classpath.
+     */
+    public static void writeJar(Path typeTable, Path jar) throws IOException {
+        Map<String, byte[]> classes;
+        try (InputStream in = Files.newInputStream(typeTable)) {
+            classes = read(in);
+        }
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (Map.Entry<String, byte[]> clazz : classes.entrySet()) {
+                out.putNextEntry(new JarEntry(clazz.getKey() + ".class"));
+                out.write(clazz.getValue());
+                out.closeEntry();
+            }
+        }
+    }
+
+    private Map<String, byte[]> read() throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a type table");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported type table version " + version);
+        }
+
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (int tag = in.readByte(); tag != END; tag = in.readByte()) {
+            if (tag != CLASS) {
+                throw new IOException("Malformed type table, expected a class but found " + tag);
+            }
+            int access = readInt();
+            String name = readString();
+            //noinspection ConstantConditions
+            classes.put(name, readClass(access, name));
+        }
+        return classes;
+    }
+
+    private byte[] readClass(int access, String name) throws IOException {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, access, name, readString(), readString(), readStrings());
+
+        for (int tag = in.readByte(); tag != END_OF_CLASS; tag = in.readByte()) {
+            switch (tag) {
+                case INNER_CLASS:
+                    //noinspection ConstantConditions
+                    cw.visitInnerClass(readString(), readString(), readString(), readInt());
+                    break;
+                case FIELD:
+                    cw.visitField(readInt(), readString(), readString(), readString(), null).visitEnd();
+                    break;
+                case METHOD:
+                    int methodAccess = readInt();
+                    MethodVisitor mv = cw.visitMethod(methodAccess, readString(), readString(), readString(), readStrings());
+                    if ((methodAccess & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0) {
+                        // a body is only needed for the class file to be valid, so it is always "throw null"
+                        mv.visitCode();
+                        mv.visitInsn(Opcodes.ACONST_NULL);
+                        mv.visitInsn(Opcodes.ATHROW);
+                        mv.visitMaxs(0, 0);
+                    }
+                    mv.visitEnd();
+                    break;
+                default:
+                    throw new IOException("Malformed type table, unexpected " + tag + " in " + name);
+            }
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    @Nullable
+    private String[] readStrings() throws IOException {
+        int length = readInt();
+        if (length == 0) {
+            return null;
+        }
+        String[] strings = new String[length];
+        for (int i = 0; i < length; i++) {
+            strings[i] = readString();
+        }
+        return strings;
+    }
+
+    @Nullable
+    private String readString() throws IOException {
+        int index = readInt() - 1;
+        if (index == -1) {
+            return null;
+        }
+        if (index == strings.size()) {
+            strings.add(in.readUTF());
+        }
+        return strings.get(index);
+    }
+
+    private int readInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.objectweb.asm.*;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the same API that {@link PublicApiPrinter} prints as a compact binary type table, which
+ * {@link TypeTableReader} turns back into class files that a parser can attribute types from without compiling
+ * any source. Every string is written once and referred to by index afterwards.
+ */
+class TypeTableWriter implements Closeable {
+    private final DataOutputStream out;
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+
+    @Nullable
+    private final Usages usages;
+
+    /**
+     * @param usages The names used by templates, to write only the members they use, or null to write every
+     *               public member.
+     */
+    TypeTableWriter(OutputStream out, @Nullable Usages usages) throws IOException {
+        this.usages = usages;
+        this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(out)));
+        this.out.writeInt(TypeTableReader.MAGIC);
+        this.out.writeInt(TypeTableReader.VERSION);
+    }
+
+    /**
+     * @return A visitor that writes each class it visits to the table as it is visited.
+     */
+    ClassVisitor classVisitor() {
+        return new ClassVisitor(Opcodes.ASM9) {
+            private String name;
+            private int access;
+
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                this.name = name;
+                this.access = access;
+                write(() -> {
+                    out.writeByte(TypeTableReader.CLASS);
+                    writeInt(access);
+                    writeString(name);
+                    writeString(signature);
+                    writeString(superName);
+                    writeStrings(interfaces);
+                });
+            }
+
+            @Override
+            public void visitInnerClass(String name, String outerName, String innerName, int access) {
+                // only the entries that describe this class or the classes directly nested in it
+                if (name.equals(this.name) || this.name.equals(outerName)) {
+                    write(() -> {
+                        out.writeByte(TypeTableReader.INNER_CLASS);
+                        writeString(name);
+                        writeString(outerName);
+                        writeString(innerName);
+                        writeInt(access);
+                    });
+                }
+            }
+
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                if (isApi(access, name)) {
+                    write(() -> {
+                        out.writeByte(TypeTableReader.FIELD);
+                        writeInt(access);
+                        writeString(name);
+                        writeString(descriptor);
+                        writeString(signature);
+                    });
+                }
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                if (isApi(access, name)) {
+                    write(() -> {
+                        out.writeByte(TypeTableReader.METHOD);
+                        writeInt(access);
+                        writeString(name);
+                        writeString(descriptor);
+                        writeString(signature);
+                        writeStrings(exceptions);
+                    });
+                }
+                return null;
+            }
+
+            @Override
+            public void visitEnd() {
+                write(() -> out.writeByte(TypeTableReader.END_OF_CLASS));
+            }
+
+            /**
+             * The same members that {@link PublicApiPrinter} prints, less the ones the compiler generated.
+             */
+            private boolean isApi(int memberAccess, String memberName) {
+                return (access & Opcodes.ACC_PUBLIC) != 0 &&
+                       (memberAccess & Opcodes.ACC_PUBLIC) != 0 &&
+                       (memberAccess & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) == 0 &&
+                       (usages == null || usages.isMemberUsed(name, memberAccess, memberName));
+            }
+        };
+    }
+
+    private void write(Write write) {
+        try {
+            write.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeStrings(@Nullable String[] strings) throws IOException {
+        if (strings == null) {
+            writeInt(0);
+            return;
+        }
+        writeInt(strings.length);
+        for (String s : strings) {
+            writeString(s);
+        }
+    }
+
+    /**
+     * Null is written as 0, a string seen before as its index + 1, and a new string as the next index + 1
+     * followed by the string itself.
+     */
+    private void writeString(@Nullable String s) throws IOException {
+        if (s == null) {
+            writeInt(0);
+            return;
+        }
+        Integer index = stringIndexes.get(s);
+        if (index != null) {
+            writeInt(index + 1);
+            return;
+        }
+        index = stringIndexes.size();
+        stringIndexes.put(s, index);
+        writeInt(index + 1);
+        out.writeUTF(s);
+    }
+
+    /**
+     * Unsigned LEB128, so that the small numbers that make up most of the table take one byte.
+     */
+    private void writeInt(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    @FunctionalInterface
+    private interface Write {
+        void run() throws IOException;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.writeByte(TypeTableReader.END);
+        out.close();
+    }
+}
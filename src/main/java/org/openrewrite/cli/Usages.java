@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The identifiers that appear anywhere in a set of template or recipe sources, including inside string literals,
+ * where the code of a JavaTemplate lives. Sources aren't parsed, so a name counts as used wherever it appears,
+ * which can only keep more than is needed, never less. Members are matched by name alone, so every overload of a
+ * used method is kept.
+ */
+public class Usages {
+    private final Set<String> identifiers = ConcurrentHashMap.newKeySet();
+
+    public Usages(Set<String> identifiers) {
+        this.identifiers.addAll(identifiers);
+    }
+
+    /**
+     * @param sources Source files, or directories to scan for .java files.
+     */
+    public static Usages scan(Collection<Path> sources) throws IOException {
+        Set<String> identifiers = new HashSet<>();
+        for (Path source : sources) {
+            List<Path> files;
+            if (Files.isDirectory(source)) {
+                try (Stream<Path> walk = Files.walk(source)) {
+                    files = walk.filter(p -> p.toString().endsWith(".java")).collect(toList());
+                }
+            } else {
+                files = Collections.singletonList(source);
+            }
+            for (Path file : files) {
+                scan(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), identifiers);
+            }
+        }
+        return new Usages(identifiers);
+    }
+
+    static void scan(CharSequence source, Set<String> identifiers) {
+        int start = -1;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (start == -1) {
+                if (Character.isJavaIdentifierStart(c)) {
+                    start = i;
+                }
+            } else if (!Character.isJavaIdentifierPart(c)) {
+                identifiers.add(source.subSequence(start, i).toString());
+                start = -1;
+            }
+        }
+        if (start != -1) {
+            identifiers.add(source.subSequence(start, source.length()).toString());
+        }
+    }
+
+    /**
+     * @param fqn Fully qualified name of a class, where nested classes are named with '$'.
+     */
+    public boolean isTypeUsed(String fqn) {
+        return identifiers.contains(simpleName(fqn));
+    }
+
+    /**
+     * Enum constants and abstract methods are always kept, since an enum can't declare methods without constants
+     * and lambdas need the abstract method of a functional interface. A constructor is kept when its class is used.
+     *
+     * @param className Internal name of the class that declares the member.
+     */
+    public boolean isMemberUsed(String className, int access, String name) {
+        if ((access & (Opcodes.ACC_ENUM | Opcodes.ACC_ABSTRACT)) != 0) {
+            return true;
+        }
+        return identifiers.contains("<init>".equals(name) ? simpleName(className) : name);
+    }
+
+    /**
+     * Marks a name as used that no template mentions, like the name of an abstract method that the kept classes
+     * implement, which they need to keep to compile.
+     *
+     * @return Whether the name wasn't used before.
+     */
+    boolean use(String name) {
+        return identifiers.add(name);
+    }
+
+    /**
+     * @return Usages with the same names, that names can be used in without affecting these.
+     */
+    Usages copy() {
+        return new Usages(identifiers);
+    }
+
+    private static String simpleName(String name) {
+        return name.substring(Math.max(Math.max(name.lastIndexOf('/'), name.lastIndexOf('.')), name.lastIndexOf('$')) + 1);
+    }
+}
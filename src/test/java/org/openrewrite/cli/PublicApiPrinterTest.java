@@ -0,0 +1,222 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PublicApiPrinterTest {
+    /**
+     * Shared by every case, like the caches of a real run, so cases also render from names that earlier cases put
+     * in the cache.
+     */
+    private static final TypeNameCache TYPE_NAME_CACHE = new TypeNameCache(new SymbolTable(16, 64, 1_024, 16),
+            new Profile());
+
+    /**
+     * Expected members are what the regex-based rendering that {@link TypeNameCache} replaced printed for the
+     * same members of a class in org.example.
+     */
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            // descriptor | signature | thrown exception | expected member
+            "Ljava/io/File;                                  |                                            | | public File f;",
+            "[Ljava/io/File;                                 |                                            | | public File[] f;",
+            "Lorg/example/Part;                              |                                            | | public Part f;",
+            "Lorg/example/Widget$Part;                       |                                            | | public Widget.Part f;",
+            "[Lorg/example/Widget$Part;                      |                                            | | public Widget.Part[] f;",
+            "Lorg/example/other/Gadget;                      |                                            | | public org.example.other.Gadget f;",
+            "Lorg/examples/Gadget;                           |                                            | | public org.examples.Gadget f;",
+            "Ljava/util/Map$Entry;                           |                                            | | public java.util.Map.Entry f;",
+            "Ljava/util/List;                                | Ljava/util/List<+Lorg/example/Part;>;      | | public java.util.List<? extends org.example.Part> f;",
+            "Ljava/util/List;                                | Ljava/util/List<-Ljava/io/File;>;          | | public java.util.List<? super File> f;",
+            "Ljava/util/Map$Entry;                           | Ljava/util/Map$Entry<Ljava/lang/String;*>; | | public java.util.Map.Entry<java.lang.String, ?> f;",
+            "Lorg/example/Box;                               | Lorg/example/Box<Lorg/example/Part;>;      | | public org.example.Box<org.example.Part> f;",
+            "Ljava/lang/Object;                              | TT;                                        | | public T f;",
+            "(Ljava/io/InputStream;I)Lorg/example/Widget$Part; | | java/io/IOException               | public Widget.Part m(InputStream p0, int p1) throws IOException { return (Widget.Part) (Object) null; }",
+            "(Lorg/example/other/Gadget;)V                   |   | org/example/Widget$Failure        | public void m(org.example.other.Gadget p0) throws Widget.Failure {}",
+            "()Ljava/util/Map$Entry;                         |   | org/example/other/GadgetException | public java.util.Map.Entry m() throws org.example.other.GadgetException { return (java.util.Map.Entry) (Object) null; }",
+    })
+    void typesAreRenderedAsBeforeTheyWereCached(String descriptor, String signature, String exception, String expected)
+            throws IOException {
+        // the second time, every name comes from the cache
+        for (int i = 0; i < 2; i++) {
+            PublicApiPrinter printer = new PublicApiPrinter(TYPE_NAME_CACHE, null);
+            printer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "org/example/Widget",
+                    "<T:Ljava/lang/Object;>Ljava/lang/Object;", "java/lang/Object", null);
+            if (descriptor.startsWith("(")) {
+                printer.visitMethod(Opcodes.ACC_PUBLIC, "m", descriptor, signature, new String[]{exception});
+            } else {
+                printer.visitField(Opcodes.ACC_PUBLIC, "f", descriptor, signature, null);
+            }
+            printer.visitEnd();
+
+            StringWriter out = new StringWriter();
+            printer.print(out);
+            assertThat(out.toString()).contains("\n  " + expected + "\n");
+        }
+    }
+
+    @Test
+    void nestedClassesArePrintedInsideTheirOuterClass() throws IOException {
+        String printed = print(1);
+        assertThat(printed).isEqualTo(
+                "package org.example.p0;\n" +
+                "import java.io.*;\n" +
+                "\n" +
+                "public class C0 {\n" +
+                "  public void m() {}\n" +
+                "  public static class A {\n" +
+                "    public void m() {}\n" +
+                "    public static class B {\n" +
+                "      public void m() {}\n" +
+                "    }\n" +
+                "  }\n" +
+                "  public static class C {\n" +
+                "    public void m() {}\n" +
+                "  }\n" +
+                "}\n" +
+                "---" + System.lineSeparator());
+    }
+
+    @Test
+    void membersThatTemplatesDoNotUseArePruned() throws IOException {
+        Set<String> identifiers = new HashSet<>();
+        Usages.scan("JavaTemplate.builder(\"new Widget().size(#{any()})\")", identifiers);
+
+        PublicApiPrinter printer = new PublicApiPrinter(new TypeNameCache(), new Usages(identifiers));
+        printer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_SUPER,
+                "org/example/Widget", null, "java/lang/Object", null);
+        printer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        printer.visitMethod(Opcodes.ACC_PUBLIC, "size", "()I", null, null);
+        printer.visitMethod(Opcodes.ACC_PUBLIC, "color", "()I", null, null);
+        printer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "draw", "()V", null, null);
+        printer.visitField(Opcodes.ACC_PUBLIC, "weight", "I", null, null);
+        printer.visitEnd();
+
+        StringWriter out = new StringWriter();
+        printer.print(out);
+        assertThat(out.toString())
+                .contains(" Widget()", " size()", " draw()")
+                .doesNotContain("color", "weight");
+    }
+
+    @Test
+    void headerOfClassThatIsNotPublicIsPrintedLikeTheWholeClass() throws IOException {
+        byte[] packagePrivate = classFile(Opcodes.ACC_SUPER, "org/example/Hidden");
+
+        PublicApiPrinter whole = new PublicApiPrinter();
+        new ClassReader(packagePrivate).accept(whole, ClassReader.SKIP_DEBUG);
+        PublicApiPrinter header = new PublicApiPrinter();
+        StubGenerator.accept(new ClassReader(packagePrivate), header);
+
+        StringWriter wholeOut = new StringWriter();
+        whole.print(wholeOut);
+        StringWriter headerOut = new StringWriter();
+        header.print(headerOut);
+        assertThat(headerOut.toString()).isEqualTo(wholeOut.toString());
+    }
+
+    @Test
+    void classesThatSourceCannotReferenceHaveNoStub() {
+        assertThat(StubGenerator.isStubbed(new ClassReader(classFile(Opcodes.ACC_PUBLIC, "org/example/Widget$Part")))).isTrue();
+        assertThat(StubGenerator.isStubbed(new ClassReader(classFile(Opcodes.ACC_SUPER, "org/example/Widget$1")))).isFalse();
+        assertThat(StubGenerator.isStubbed(new ClassReader(classFile(Opcodes.ACC_SUPER, "org/example/Widget$1Local$Part")))).isFalse();
+        assertThat(StubGenerator.isStubbed(new ClassReader(classFile(Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT |
+                Opcodes.ACC_SYNTHETIC, "org/example/package-info")))).isFalse();
+    }
+
+    @Test
+    void printScalesLinearlyWithClassCount() throws IOException {
+        // warm up, so that allocations the JIT compiler eliminates are eliminated in both measurements
+        for (int i = 0; i < 3; i++) {
+            print(5_000);
+        }
+
+        long small = Long.MAX_VALUE;
+        long large = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            small = Math.min(small, allocatedByPrint(5_000));
+            large = Math.min(large, allocatedByPrint(20_000));
+        }
+
+        // 4x the classes; a quadratic assembly would allocate ~16x as much. Unlike time, allocation doesn't
+        // depend on what else the machine is running.
+        assertThat(large).isLessThan(small * 10);
+    }
+
+    private static long allocatedByPrint(int topLevelClasses) throws IOException {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        print(topLevelClasses);
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    /**
+     * Each top-level class has three nested classes, two of them at the same level and one nested twice,
+     * so the input has 4x as many classes as top-level classes (20k for 5k top-level classes).
+     */
+    private static String print(int topLevelClasses) throws IOException {
+        PublicApiPrinter printer = new PublicApiPrinter();
+        for (int i = topLevelClasses - 1; i >= 0; i--) {
+            String topLevel = "org/example/p" + (i % 50) + "/C" + i;
+            visit(printer, topLevel + "$C", Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC);
+            visit(printer, topLevel + "$A$B", Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC);
+            visit(printer, topLevel + "$A", Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC);
+            visit(printer, topLevel, Opcodes.ACC_PUBLIC);
+        }
+
+        StringWriter out = new StringWriter();
+        printer.print(out);
+        return out.toString();
+    }
+
+    private static byte[] classFile(int access, String name) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(Opcodes.V1_8, access, name, null, "java/lang/Object", new String[]{"java/io/Serializable"});
+        classWriter.visitField(Opcodes.ACC_PUBLIC, "size", "I", null, null).visitEnd();
+        MethodVisitor method = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        method.visitCode();
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private static void visit(PublicApiPrinter printer, String name, int access) {
+        printer.visit(Opcodes.V1_8, access | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+        printer.visitMethod(Opcodes.ACC_PUBLIC, "m", "()V", null, null);
+        printer.visitEnd();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResolutionCacheTest {
+    @Test
+    void artifactsAndClasspathsAreKeptApart(@TempDir Path dir) throws IOException {
+        Path a = Files.createFile(dir.resolve("a.jar"));
+        Path b = Files.createFile(dir.resolve("b.jar"));
+        ResolutionCache resolutionCache = new ResolutionCache(dir.resolve("cache"));
+
+        Map<String, Path> artifacts = new LinkedHashMap<>();
+        artifacts.put("g:a:1", a);
+        artifacts.put("g:b:1", b);
+        resolutionCache.putClasspath("g", "a", "1", asList("g:a:1", "g:b:1"), artifacts);
+        resolutionCache.putArtifact("g", "a", "1", a);
+
+        assertThat(resolutionCache.getArtifact("g", "a", "1")).isEqualTo(a.toAbsolutePath());
+        assertThat(resolutionCache.getClasspath("g", "a", "1")).containsExactly(a.toAbsolutePath(), b.toAbsolutePath());
+    }
+
+    @Test
+    void classpathWithFailedDownloadsIsNotKept(@TempDir Path dir) throws IOException {
+        Path a = Files.createFile(dir.resolve("a.jar"));
+        ResolutionCache resolutionCache = new ResolutionCache(dir.resolve("cache"));
+
+        Map<String, Path> artifacts = new LinkedHashMap<>();
+        artifacts.put("g:a:1", a);
+        resolutionCache.putClasspath("g", "a", "1", asList("g:a:1", "g:b:1"), artifacts);
+
+        assertThat(resolutionCache.getClasspath("g", "a", "1")).isNull();
+    }
+
+    @Test
+    void failedWritesLeaveNoTemporaryFiles(@TempDir Path dir) throws IOException {
+        Path a = Files.createFile(dir.resolve("a.jar"));
+        ResolutionCache resolutionCache = new ResolutionCache(dir.resolve("cache"));
+        // a directory where the entry goes can't be replaced by the written entry
+        Path entry = Files.createDirectories(dir.resolve("cache/g/a/1.properties"));
+        Files.createFile(entry.resolve("occupied"));
+
+        resolutionCache.putArtifact("g", "a", "1", a);
+
+        assertThat(resolutionCache.getArtifact("g", "a", "1")).isNull();
+        try (Stream<Path> entries = Files.list(entry.getParent())) {
+            assertThat(entries).containsExactly(entry);
+        }
+    }
+}
@@ -285,6 +285,23 @@ public class RewriteTemplateGeneratorTest {
         assertDependsOnGenerated("com.google.guava:guava:29.0-jre");
     }
 
+    @SuppressWarnings({"InstantiationOfUtilityClass", "UseOfSystemOutOrSystemErr"})
+    @Test
+    void outputsAreExclusive() {
+        PrintStream oldErr = System.err;
+        System.setErr(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            assertThat(new CommandLine(new RewriteTemplateGenerator())
+                    .execute("depends-on", "--jar=stubs.jar", "--output-dir=stubs", "--output-jar=stubs.jar"))
+                    .isEqualTo(CommandLine.ExitCode.USAGE);
+            assertThat(new CommandLine(new RewriteTemplateGenerator())
+                    .execute("depends-on", "--jar=stubs.jar", "--stream", "--output-dir=stubs"))
+                    .isEqualTo(CommandLine.ExitCode.USAGE);
+        } finally {
+            System.setErr(oldErr);
+        }
+    }
+
     @SuppressWarnings({"InstantiationOfUtilityClass", "CatchMayIgnoreException"})
     private void printStubFor(String gav, String... types) {
         int exitCode = -1;
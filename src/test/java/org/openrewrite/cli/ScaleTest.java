@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Generates stubs for whole synthetic jars, from opening the zip to the sources of every top-level class, on
+ * one thread. Budgets are about four times what a run takes on a laptop, so they only fail on regressions
+ * like a quadratic step or a leak, not on a slow machine. Runs in the {@code scaleTest} task rather than
+ * {@code test}, because budgets only mean something without other tests competing for the machine.
+ */
+public class ScaleTest {
+    private static final long FIXED_NANOS = 5_000_000_000L;
+    private static final long NANOS_PER_CLASS = 500_000;
+    private static final long ALLOCATED_BYTES_PER_CLASS = 96 * 1024;
+    private static final long RETAINED_BYTES_PER_CLASS = 8 * 1024;
+
+    @Tag("scale")
+    @ParameterizedTest
+    @ValueSource(ints = {1_000, 10_000, 50_000})
+    void generatingStubsStaysWithinBudget(int classes, @TempDir Path dir) throws Exception {
+        Path jar = dir.resolve("synthetic.jar");
+        new SyntheticJar(classes).write(jar);
+        TemplateStubs templateStubs = new TemplateStubs();
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        System.gc();
+        long usedBefore = usedHeap();
+        long allocatedBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long start = System.nanoTime();
+
+        Map<String, CharSequence> stubs = templateStubs.fromClasses(jar, null);
+
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+        System.gc();
+        long retained = usedHeap() - usedBefore;
+
+        // each top-level class has one nested class
+        assertThat(stubs).hasSize(classes / 2);
+        assertThat(nanos).isLessThan(FIXED_NANOS + classes * NANOS_PER_CLASS);
+        assertThat(allocated).isLessThan(classes * ALLOCATED_BYTES_PER_CLASS);
+        // the stubs themselves are held, along with the names the symbol table keeps
+        assertThat(retained).isLessThan(classes * RETAINED_BYTES_PER_CLASS);
+    }
+
+    @Test
+    void syntheticClassesAreShapedByTheOptions(@TempDir Path dir) throws Exception {
+        Path jar = dir.resolve("synthetic.jar");
+        new SyntheticJar(8).withNestingDepth(3).withMembers(2, 4).write(jar);
+        Map<String, CharSequence> stubs = new TemplateStubs().fromClasses(jar, null);
+        assertThat(stubs).containsOnlyKeys("org.example.p0.C0", "org.example.p0.C1");
+        assertThat(stubs.get("org.example.p0.C1").toString())
+                .contains("public class C1 extends C0")
+                .contains("      public class N3 {")
+                .contains(" m2(")
+                .doesNotContain(" m1(");
+
+        new SyntheticJar(4).withEnumDensity(1).write(jar);
+        assertThat(new TemplateStubs().fromClasses(jar, null).get("org.example.p0.C0").toString())
+                .contains("public enum C0 {")
+                .contains("CONSTANT_3,");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
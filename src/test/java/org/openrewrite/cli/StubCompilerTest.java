@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StubCompilerTest {
+    @Test
+    void verifyReportsErrorsOfEachStubOnce() throws IOException {
+        Map<String, String> stubs = StubCompiler.readStubs(new BufferedReader(new StringReader(
+                "package org.example.a;\n" +
+                "import java.io.*;\n" +
+                "\n" +
+                "public class A {\n" +
+                "  public org.example.b.B b() { return (org.example.b.B) (Object) null; }\n" +
+                "}\n" +
+                "---\n" +
+                "package org.example.b;\n" +
+                "import java.io.*;\n" +
+                "\n" +
+                "public interface B {\n" +
+                "}\n" +
+                "---\n" +
+                "package org.example.c;\n" +
+                "import java.io.*;\n" +
+                "\n" +
+                "public class C extends org.example.Missing {\n" +
+                "}\n" +
+                "---\n")));
+        assertThat(stubs).containsOnlyKeys("org.example.a.A", "org.example.b.B", "org.example.c.C");
+
+        // one stub per thread, so A only sees B on the source path
+        Map<String, List<String>> failures = new StubCompiler(Collections.emptyList()).verify(stubs, 3);
+        assertThat(failures).containsOnlyKeys("org.example.c.C");
+        assertThat(failures.get("org.example.c.C")).hasSize(1);
+    }
+
+    @Test
+    void stubsTakePrecedenceOverTheClassesTheyWereGeneratedFrom(@TempDir Path dir) throws IOException {
+        Path jar = dir.resolve("original.jar");
+        try (OutputStream out = Files.newOutputStream(jar)) {
+            new StubCompiler(Collections.emptyList())
+                    .compile(Collections.singletonMap("org.example.b.B", "package org.example.b;\npublic class B {}\n"))
+                    .writeJar(out);
+        }
+
+        Map<String, String> stubs = StubCompiler.readStubs(new BufferedReader(new StringReader(
+                "package org.example.a;\n" +
+                "public class A extends org.example.b.B {\n" +
+                "}\n" +
+                "---\n" +
+                "package org.example.b;\n" +
+                "public final class B {\n" +
+                "}\n")));
+
+        // the jar's B is newer than the stub, and can be extended where the stub can't
+        StubCompiler stubCompiler = new StubCompiler(Collections.singletonList(jar));
+        Map<String, List<String>> failures = stubCompiler.verify(stubs, 2);
+        assertThat(failures).containsOnlyKeys("org.example.a.A");
+        assertThat(stubCompiler.verify(stubs, 1)).isEqualTo(failures);
+    }
+
+    @Test
+    void errorsOutsideOfStubsAreReportedOnceAcrossRuns() {
+        Map<String, List<String>> first = new TreeMap<>();
+        first.put("org.example.a.A", Collections.singletonList("3: cannot find symbol"));
+        first.put("", asList("lib/Shared.class:0: bad class file", "error reading lib.jar"));
+        Map<String, List<String>> second = new TreeMap<>();
+        second.put("", asList("error reading lib.jar", "lib/Shared.class:0: bad class file"));
+
+        Map<String, List<String>> failures = StubCompiler.merge(asList(first, second));
+        assertThat(failures).containsOnlyKeys("", "org.example.a.A");
+        assertThat(failures.get("")).containsExactly("lib/Shared.class:0: bad class file", "error reading lib.jar");
+        assertThat(failures.get("org.example.a.A")).containsExactly("3: cannot find symbol");
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StubDirectoryTest {
+    @Test
+    void indexListsEveryStubInNameOrder(@TempDir Path dir) throws IOException {
+        Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("org.example.b.B", "package org.example.b;\npublic class B {\n}\n");
+        sources.put("org.example.a.A", "package org.example.a;\npublic class A {\n  public static class \u00c4 {\n  }\n}\n");
+        sources.put("Unnamed", "public class Unnamed {\n}\n");
+
+        long written = new StubDirectory(dir).write(sources, 2);
+
+        long a = Files.size(dir.resolve("org/example/a/A.java"));
+        long b = Files.size(dir.resolve("org/example/b/B.java"));
+        long unnamed = Files.size(dir.resolve("Unnamed.java"));
+        assertThat(Files.readAllLines(dir.resolve(StubDirectory.INDEX))).containsExactly(
+                "Unnamed\tUnnamed.java\t" + unnamed,
+                "org.example.a.A\torg/example/a/A.java\t" + a,
+                "org.example.b.B\torg/example/b/B.java\t" + b);
+        assertThat(written).isEqualTo(a + b + unnamed);
+        assertThat(new String(Files.readAllBytes(dir.resolve("org/example/a/A.java")), StandardCharsets.UTF_8))
+                .isEqualTo(sources.get("org.example.a.A"));
+    }
+}
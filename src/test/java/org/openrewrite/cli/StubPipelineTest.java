@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StubPipelineTest {
+    @Test
+    void artifactThatFailsPartwayThroughIsReportedWithoutItsStubs(@TempDir Path dir) throws IOException {
+        Path good = dir.resolve("good.jar");
+        new SyntheticJar(4).write(good);
+
+        // org.example.A visits, but org.example.Z, visited after it, isn't a class file ASM can read
+        Path bad = dir.resolve("bad.jar");
+        try (OutputStream out = Files.newOutputStream(bad);
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            ClassWriter classWriter = new ClassWriter(0);
+            classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, "org/example/A", null,
+                    "java/lang/Object", null);
+            classWriter.visitEnd();
+            zip.putNextEntry(new ZipEntry("org/example/A.class"));
+            zip.write(classWriter.toByteArray());
+            zip.putNextEntry(new ZipEntry("org/example/Z.class"));
+            zip.write(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0x7F, 0x7F});
+        }
+
+        ResolutionCache resolutionCache = new ResolutionCache(dir.resolve("resolutions"));
+        resolutionCache.putArtifact("g", "bad", "1", bad);
+        resolutionCache.putArtifact("g", "good", "1", good);
+
+        Profile profile = new Profile();
+        StubGenerator stubGenerator = new StubGenerator(1, false, null, profile);
+        StubPipeline stubPipeline = new StubPipeline(new ArtifactResolver(null, resolutionCache, profile),
+                stubGenerator, 2, 2);
+
+        StringWriter out = new StringWriter();
+        stubPipeline.run(asList(new StubPipeline.Artifact("g:bad:1", null),
+                        new StubPipeline.Artifact("g:good:1", null)), out, (artifact, cause, o) -> o.write("failed " + artifact.getDependency() + "\n"));
+
+        StringWriter expected = new StringWriter();
+        expected.write("failed g:bad:1\n");
+        try (JarIndex jarIndex = JarIndex.open(good)) {
+            stubGenerator.print(stubGenerator.generate(jarIndex, null), expected);
+        }
+        assertThat(out.toString()).isEqualTo(expected.toString());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StubServerTest {
+    @Test
+    void evictedArtifactsAreOpenedAgain(@TempDir Path dir) throws IOException {
+        ResolutionCache resolutionCache = new ResolutionCache(dir.resolve("resolutions"));
+        for (String artifactId : new String[]{"a", "b"}) {
+            Path jar = dir.resolve(artifactId + ".jar");
+            new SyntheticJar(4).write(jar);
+            resolutionCache.putArtifact("g", artifactId, "1", jar);
+        }
+
+        Profile profile = new Profile();
+        StubServer stubServer = new StubServer(new ArtifactResolver(null, resolutionCache, profile), null,
+                profile, 1);
+        StringWriter out = new StringWriter();
+        stubServer.serve(new BufferedReader(new StringReader(
+                "{\"id\": \"1\", \"dependency\": \"g:a:1\"}\n" +
+                "{\"id\": \"2\", \"dependency\": \"g:b:1\"}\n" +
+                "{\"id\": \"3\", \"dependency\": \"g:a:1\"}\n")), out, 1);
+
+        String[] responses = out.toString().split("\n");
+        assertThat(responses.length).isEqualTo(3);
+        for (String response : responses) {
+            assertThat(response).contains("\"exitCode\":0");
+        }
+    }
+
+    @Test
+    void servingStopsOnceAnAnswerCantBeWritten() {
+        StringBuilder requests = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            requests.append("{\"id\": \"").append(i).append("\"}\n");
+        }
+        AtomicInteger read = new AtomicInteger();
+        BufferedReader in = new BufferedReader(new StringReader(requests.toString())) {
+            @Override
+            public String readLine() throws IOException {
+                read.incrementAndGet();
+                return super.readLine();
+            }
+        };
+        Writer out = new Writer() {
+            @Override
+            public void write(char[] buffer, int off, int len) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        Profile profile = new Profile();
+        StubServer stubServer = new StubServer(new ArtifactResolver(null, null, profile), null, profile, 1);
+        assertThatThrownBy(() -> stubServer.serve(in, out, 2))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+        assertThat(read.get()).isLessThan(1_000);
+    }
+}
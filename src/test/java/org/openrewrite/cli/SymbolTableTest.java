@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SymbolTableTest {
+    @Test
+    void namesRenderedInDifferentPackagesAreHeldOnce() {
+        SymbolTable symbolTable = new SymbolTable(16, 64, 1_024, 16);
+        TypeNameCache a = new TypeNameCache(symbolTable, new Profile());
+        TypeNameCache b = new TypeNameCache(symbolTable, new Profile());
+
+        String inA = a.forPackage("org.example.a").descriptor("Ljava/util/List;");
+        String inB = b.forPackage("org.example.b").descriptor("Ljava/util/List;");
+        assertThat(inA).isEqualTo("java.util.List");
+        assertThat(inA == inB).isTrue();
+
+        // rendered once, by whichever cache asked first
+        assertThat(b.forPackage("org.example.a").descriptor("Ljava/util/List;") == inA).isTrue();
+        assertThat(b.getHits()).isEqualTo(1L);
+    }
+
+    @Test
+    void namesRenderedInOnePackageAreBounded() {
+        SymbolTable symbolTable = new SymbolTable(16, 8, 1_024, 16);
+        TypeNameCache.PackageTypeNames typeNames = new TypeNameCache(symbolTable, new Profile())
+                .forPackage("org.example");
+        for (int i = 0; i < 100; i++) {
+            assertThat(typeNames.descriptor("Lorg/example/C" + i + ";")).isEqualTo("C" + i);
+        }
+        assertThat(symbolTable.forPackage("org.example").byDescriptor.size()).isEqualTo(8);
+    }
+
+    @Test
+    void stubsAreKeyedByArtifactAndBounded() {
+        SymbolTable symbolTable = new SymbolTable(16, 64, 16, 32);
+        symbolTable.putStub("jar1", "org/example/A", "class A {\n");
+        assertThat(symbolTable.getStub("jar1", "org/example/A").toString()).isEqualTo("class A {\n");
+        assertThat(symbolTable.getStub("jar2", "org/example/A")).isNull();
+
+        for (int i = 0; i < 1_000; i++) {
+            symbolTable.putStub("jar1", "org/example/C" + i, "class C" + i + " {\n");
+        }
+        int held = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if (symbolTable.getStub("jar1", "org/example/C" + i) != null) {
+                held++;
+            }
+        }
+        assertThat(held).isLessThanOrEqualTo(32);
+    }
+
+    @Test
+    void stubsAreOnlyHeldForGeneratorsThatReuseThem(@TempDir Path dir) throws Exception {
+        Path jar = dir.resolve("synthetic.jar");
+        new SyntheticJar(4).write(jar);
+        try (JarIndex jarIndex = JarIndex.open(jar)) {
+            String artifactHash = jarIndex.getArtifactHash("org.example.p0.C0");
+
+            SymbolTable oneShot = new SymbolTable(16, 64, 1_024, 16);
+            new StubGenerator(1, false, null, null, oneShot, false, new Profile()).generate(jarIndex, null);
+            assertThat(oneShot.getStub(artifactHash, "org/example/p0/C0")).isNull();
+
+            SymbolTable reused = new SymbolTable(16, 64, 1_024, 16);
+            new StubGenerator(1, false, null, null, reused, true, new Profile()).generate(jarIndex, null);
+            assertThat(reused.getStub(artifactHash, "org/example/p0/C0")).isNotNull();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes jars of generated classes, shaped like a library's, so that tests can exercise artifacts of any size
+ * without network access. Classes reference each other and the platform in their signatures, every fourth
+ * top-level class isn't public, and the same options always write the same classes.
+ */
+class SyntheticJar {
+    private static final int CLASSES_PER_PACKAGE = 50;
+
+    private final int classes;
+    private final int nestingDepth;
+    private final double genericsDensity;
+    private final double enumDensity;
+    private final int fields;
+    private final int methods;
+
+    /**
+     * @param classes Number of class files to write, nested classes included.
+     */
+    SyntheticJar(int classes) {
+        this(classes, 1, 0.3, 0.1, 4, 8);
+    }
+
+    private SyntheticJar(int classes, int nestingDepth, double genericsDensity, double enumDensity, int fields, int methods) {
+        this.classes = classes;
+        this.nestingDepth = nestingDepth;
+        this.genericsDensity = genericsDensity;
+        this.enumDensity = enumDensity;
+        this.fields = fields;
+        this.methods = methods;
+    }
+
+    /**
+     * @param nestingDepth Number of classes nested in each top-level class, each in the one before.
+     */
+    SyntheticJar withNestingDepth(int nestingDepth) {
+        return new SyntheticJar(classes, nestingDepth, genericsDensity, enumDensity, fields, methods);
+    }
+
+    /**
+     * @param genericsDensity Share of classes, fields and methods with type parameters or parameterized types.
+     */
+    SyntheticJar withGenericsDensity(double genericsDensity) {
+        return new SyntheticJar(classes, nestingDepth, genericsDensity, enumDensity, fields, methods);
+    }
+
+    /**
+     * @param enumDensity Share of top-level classes that are enums, whose fields are their constants.
+     */
+    SyntheticJar withEnumDensity(double enumDensity) {
+        return new SyntheticJar(classes, nestingDepth, genericsDensity, enumDensity, fields, methods);
+    }
+
+    /**
+     * @param fields  Number of fields of each class, of which every other one is public.
+     * @param methods Number of methods of each class, of which every other one is public.
+     */
+    SyntheticJar withMembers(int fields, int methods) {
+        return new SyntheticJar(classes, nestingDepth, genericsDensity, enumDensity, fields, methods);
+    }
+
+    void write(Path jar) throws IOException {
+        Random random = new Random(classes);
+        int topLevelClasses = (classes + nestingDepth) / (nestingDepth + 1);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(jar));
+             ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.setLevel(Deflater.BEST_SPEED);
+            int written = 0;
+            String extendable = null;
+            for (int i = 0; i < topLevelClasses && written < classes; i++) {
+                String name = className(i);
+                if (i % CLASSES_PER_PACKAGE == 0) {
+                    extendable = null;
+                }
+                boolean isEnum = random.nextDouble() < enumDensity;
+                int access = i % 4 == 3 ? 0 : Opcodes.ACC_PUBLIC;
+                write(zip, name, isEnum ?
+                        topLevelEnum(name, access) :
+                        topLevelClass(name, access, extendable, topLevelClasses, random));
+                written++;
+                // extend the class before in the same package, where that is a public class
+                extendable = isEnum || access == 0 ? null : name;
+
+                String nested = name;
+                for (int depth = 1; depth <= nestingDepth && written < classes; depth++) {
+                    String outer = nested;
+                    nested = nested + "$N" + depth;
+                    write(zip, nested, nestedClass(outer, nested, topLevelClasses, random));
+                    written++;
+                }
+            }
+        }
+    }
+
+    private static void write(ZipOutputStream zip, String name, byte[] classFile) throws IOException {
+        zip.putNextEntry(new ZipEntry(name + ".class"));
+        zip.write(classFile);
+        zip.closeEntry();
+    }
+
+    private static String className(int index) {
+        return "org/example/p" + (index / CLASSES_PER_PACKAGE) + "/C" + index;
+    }
+
+    private byte[] topLevelClass(String name, int access, @Nullable String extendable, int topLevelClasses,
+                                 Random random) {
+        ClassWriter classWriter = new ClassWriter(0);
+        String superName = extendable == null ? "java/lang/Object" : extendable;
+        boolean generic = random.nextDouble() < genericsDensity;
+        classWriter.visit(Opcodes.V1_8, access | Opcodes.ACC_SUPER, name,
+                generic ? "<T:Ljava/lang/Object;>L" + superName + ";Ljava/lang/Comparable<TT;>;" : null,
+                superName, new String[]{"java/lang/Comparable"});
+        members(classWriter, generic, topLevelClasses, random);
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private byte[] nestedClass(String outer, String name, int topLevelClasses, Random random) {
+        ClassWriter classWriter = new ClassWriter(0);
+        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+        classWriter.visitInnerClass(name, outer, name.substring(name.lastIndexOf('$') + 1),
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC);
+        members(classWriter, false, topLevelClasses, random);
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private byte[] topLevelEnum(String name, int access) {
+        ClassWriter classWriter = new ClassWriter(0);
+        String descriptor = "L" + name + ";";
+        classWriter.visit(Opcodes.V1_8, access | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_ENUM, name,
+                "Ljava/lang/Enum<" + descriptor + ">;", "java/lang/Enum", null);
+        for (int i = 0; i < Math.max(1, fields); i++) {
+            classWriter.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_ENUM,
+                    "CONSTANT_" + i, descriptor, null, null).visitEnd();
+        }
+        method(classWriter, Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "values", "()[" + descriptor, null);
+        method(classWriter, Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "valueOf", "(Ljava/lang/String;)" + descriptor, null);
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * @param topLevelClasses Number of top-level classes, any of which a member's type can be.
+     */
+    private void members(ClassWriter classWriter, boolean genericClass, int topLevelClasses, Random random) {
+        for (int i = 0; i < fields; i++) {
+            int access = i % 2 == 0 ? Opcodes.ACC_PUBLIC : Opcodes.ACC_PRIVATE;
+            if (random.nextDouble() < genericsDensity) {
+                classWriter.visitField(access, "f" + i, "Ljava/util/List;",
+                        "Ljava/util/List<L" + className(random.nextInt(topLevelClasses)) + ";>;", null).visitEnd();
+            } else {
+                classWriter.visitField(access, "f" + i, i % 3 == 0 ? "I" : "Ljava/lang/String;", null, null).visitEnd();
+            }
+        }
+
+        method(classWriter, Opcodes.ACC_PUBLIC, "<init>", "()V", null);
+        for (int i = 0; i < methods; i++) {
+            int access = i % 2 == 0 ? Opcodes.ACC_PUBLIC : Opcodes.ACC_PRIVATE;
+            if (genericClass && random.nextDouble() < genericsDensity) {
+                method(classWriter, access, "m" + i, "(Ljava/lang/Object;Ljava/util/Map;)Ljava/util/Optional;",
+                        "<U:Ljava/lang/Object;>(TT;Ljava/util/Map<Ljava/lang/String;TU;>;)Ljava/util/Optional<TU;>;");
+            } else if (random.nextDouble() < genericsDensity) {
+                method(classWriter, access, "m" + i, "(Ljava/util/Collection;)Ljava/util/List;",
+                        "(Ljava/util/Collection<+Ljava/lang/Number;>;)Ljava/util/List<[Ljava/lang/String;>;");
+            } else {
+                method(classWriter, access, "m" + i, "(ILjava/lang/String;)L" +
+                        className(random.nextInt(topLevelClasses)) + ";", null);
+            }
+        }
+    }
+
+    private static void method(ClassWriter classWriter, int access, String name, String descriptor,
+                               @Nullable String signature) {
+        MethodVisitor method = classWriter.visitMethod(access, name, descriptor, signature,
+                name.equals("<init>") ? null : new String[]{"java/io/IOException"});
+        method.visitCode();
+        if (name.equals("<init>")) {
+            method.visitVarInsn(Opcodes.ALOAD, 0);
+            method.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+            method.visitInsn(Opcodes.RETURN);
+        } else if (descriptor.endsWith(")V")) {
+            method.visitInsn(Opcodes.RETURN);
+        } else {
+            method.visitInsn(Opcodes.ACONST_NULL);
+            method.visitInsn(Opcodes.ARETURN);
+        }
+        int locals = (access & Opcodes.ACC_STATIC) != 0 ? 2 : 3;
+        method.visitMaxs(1, locals);
+        method.visitEnd();
+    }
+}
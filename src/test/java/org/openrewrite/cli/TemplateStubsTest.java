@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TemplateStubsTest {
+    @Test
+    void sinkReceivesTheSameStubsAsTheMap() throws Exception {
+        Path classes = Paths.get(TemplateStubsTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        List<String> types = asList(TemplateStubsTest.class.getName(), Widget.class.getName());
+        TemplateStubs templateStubs = new TemplateStubs().withThreads(2);
+
+        Map<String, CharSequence> stubs = templateStubs.fromClasses(classes, types);
+        assertThat(stubs).containsOnlyKeys(TemplateStubsTest.class.getName());
+        assertThat(stubs.get(TemplateStubsTest.class.getName()).toString())
+                .contains("public class Widget")
+                .contains(" name()");
+
+        Map<String, CharSequence> streamed = new LinkedHashMap<>();
+        templateStubs.fromClasses(classes, types, streamed::put);
+        assertThat(streamed).isEqualTo(stubs);
+    }
+
+    @Test
+    void outputDoesNotDependOnThreads(@TempDir Path dir) throws Exception {
+        Path jar = dir.resolve("synthetic.jar");
+        new SyntheticJar(2_000).withNestingDepth(3).withGenericsDensity(0.5).write(jar);
+
+        String serial = concatenate(new TemplateStubs().withThreads(1).fromClasses(jar, null));
+        TemplateStubs parallel = new TemplateStubs().withThreads(4);
+        assertThat(concatenate(parallel.fromClasses(jar, null))).isEqualTo(serial);
+
+        Map<String, CharSequence> streamed = new LinkedHashMap<>();
+        parallel.fromClasses(jar, null, streamed::put);
+        assertThat(concatenate(streamed)).isEqualTo(serial);
+    }
+
+    @Test
+    void callsDoNotDependOnEarlierCalls() throws Exception {
+        Path classes = Paths.get(TemplateStubsTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        List<String> widget = asList(TemplateStubsTest.class.getName(), Widget.class.getName());
+        List<String> task = asList(TemplateStubsTest.class.getName(), Task.class.getName());
+        TemplateStubs templateStubs = new TemplateStubs()
+                .withClosure(true)
+                .withUsages(new Usages(new HashSet<>(asList("TemplateStubsTest", "Widget", "Task"))));
+
+        Map<String, CharSequence> first = templateStubs.fromClasses(classes, widget);
+        assertThat(first.get(TemplateStubsTest.class.getName()).toString()).doesNotContain(" run()");
+
+        // keeping Task's run(), which Runnable needs, doesn't make Widget's run() used
+        templateStubs.fromClasses(classes, task);
+        assertThat(templateStubs.fromClasses(classes, widget)).isEqualTo(first);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Map<String, CharSequence>>> calls = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                List<String> types = i % 2 == 0 ? widget : task;
+                calls.add(executor.submit(() -> templateStubs.fromClasses(classes, types)));
+            }
+            for (int i = 0; i < calls.size(); i += 2) {
+                assertThat(calls.get(i).get()).isEqualTo(first);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void emittedStubsAreCountedInBytes() throws Exception {
+        Path classes = Paths.get(TemplateStubsTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        Profile profile = new Profile();
+        Map<String, CharSequence> stubs = new TemplateStubs().withProfile(profile)
+                .fromClasses(classes, asList(TemplateStubsTest.class.getName(), Dessert.class.getName()));
+
+        String source = stubs.get(TemplateStubsTest.class.getName()).toString();
+        assertThat(source).contains(" br\u00fbl\u00e9e()");
+        assertThat(profile.getCount(Profile.Counter.BYTES_EMITTED))
+                .isEqualTo((long) source.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static String concatenate(Map<String, CharSequence> stubs) {
+        StringBuilder concatenated = new StringBuilder();
+        for (Map.Entry<String, CharSequence> stub : stubs.entrySet()) {
+            concatenated.append(stub.getKey()).append('\n').append(stub.getValue());
+        }
+        return concatenated.toString();
+    }
+
+    @SuppressWarnings({"unused", "NonAsciiCharacters"})
+    public static class Dessert {
+        public void br\u00fbl\u00e9e() {
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class Task implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class Widget {
+        public String name() {
+            return "widget";
+        }
+
+        public void run() {
+        }
+    }
+}
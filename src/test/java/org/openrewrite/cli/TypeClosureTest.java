@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TypeClosureTest {
+    @Test
+    void resolvingLeavesTheGivenUsagesAsTheyWere() throws Exception {
+        Path classes = Paths.get(TypeClosureTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        Usages usages = new Usages(new HashSet<>(asList("Task", "Widget")));
+
+        try (ClassDirectory classDirectory = ClassDirectory.open(classes)) {
+            TypeClosure typeClosure = new TypeClosure(classDirectory, usages);
+            typeClosure.resolve(Collections.singletonList(Task.class.getName()));
+
+            // Task can't compile without run(), the abstract method of Runnable
+            //noinspection ConstantConditions
+            assertThat(typeClosure.getUsages().isMemberUsed("Task", Opcodes.ACC_PUBLIC, "run")).isTrue();
+            assertThat(usages.isMemberUsed("Widget", Opcodes.ACC_PUBLIC, "run")).isFalse();
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class Task implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.junit.jupiter.api.Test;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TypeSelectorTest {
+    @Test
+    void exactNamesDoNotNeedMatching() {
+        TypeSelector typeSelector = TypeSelector.compile(asList("a.b.C", "a.b.D"));
+        assertThat(typeSelector.getExactNames()).containsExactly("a.b.C", "a.b.D");
+        assertThat(typeSelector.matches("a.b.C")).isTrue();
+        assertThat(typeSelector.matches("a.b.CC")).isFalse();
+    }
+
+    @Test
+    void starMatchesOnePackage() {
+        TypeSelector typeSelector = TypeSelector.compile(asList("a.b.*"));
+        assertThat(typeSelector.getExactNames()).isNull();
+        assertThat(typeSelector.matches("a.b.C")).isTrue();
+        assertThat(typeSelector.matches("a.b.C$D")).isTrue();
+        assertThat(typeSelector.matches("a.b.c.D")).isFalse();
+        assertThat(typeSelector.matches("a.C")).isFalse();
+    }
+
+    @Test
+    void doubleDotMatchesAnyNumberOfPackages() {
+        TypeSelector typeSelector = TypeSelector.compile(asList("a..*Assert"));
+        assertThat(typeSelector.matches("a.FooAssert")).isTrue();
+        assertThat(typeSelector.matches("a.b.c.FooAssert")).isTrue();
+        assertThat(typeSelector.matches("a.b.c.FooAssertions")).isFalse();
+        assertThat(typeSelector.matches("b.FooAssert")).isFalse();
+    }
+
+    @Test
+    void exclusionsWin() {
+        TypeSelector typeSelector = TypeSelector.compile(asList("a..*", "!a..internal.*"));
+        assertThat(typeSelector.matches("a.b.C")).isTrue();
+        assertThat(typeSelector.matches("a.b.internal.C")).isFalse();
+
+        TypeSelector onlyExclusions = TypeSelector.compile(asList("!a.internal.*"));
+        assertThat(onlyExclusions.matches("a.C")).isTrue();
+        assertThat(onlyExclusions.matches("a.internal.C")).isFalse();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.cli;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TypeTableTest {
+    @Test
+    void classFilesKeepThePublicApi() throws IOException {
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        try (TypeTableWriter typeTableWriter = new TypeTableWriter(table, null)) {
+            new ClassReader("java.util.AbstractMap").accept(typeTableWriter.classVisitor(), ClassReader.SKIP_CODE);
+            new ClassReader("java.util.AbstractMap$SimpleEntry").accept(typeTableWriter.classVisitor(), ClassReader.SKIP_CODE);
+        }
+
+        Map<String, byte[]> classes = TypeTableReader.read(new ByteArrayInputStream(table.toByteArray()));
+        assertThat(classes.keySet()).containsExactly("java/util/AbstractMap", "java/util/AbstractMap$SimpleEntry");
+
+        List<String> members = new ArrayList<>();
+        new ClassReader(classes.get("java/util/AbstractMap")).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                members.add(signature);
+            }
+
+            @Override
+            public void visitInnerClass(String name, String outerName, String innerName, int access) {
+                members.add(innerName);
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                members.add(name + descriptor);
+                return null;
+            }
+        }, 0);
+
+        assertThat(members).contains(
+                "<K:Ljava/lang/Object;V:Ljava/lang/Object;>Ljava/lang/Object;Ljava/util/Map<TK;TV;>;",
+                "SimpleEntry",
+                "get(Ljava/lang/Object;)Ljava/lang/Object;");
+        // protected and package-private members aren't part of the stubs either
+        assertThat(members).doesNotContain("<init>()V", "clone()Ljava/lang/Object;");
+    }
+}